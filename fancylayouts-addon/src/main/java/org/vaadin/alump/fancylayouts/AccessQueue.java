@@ -0,0 +1,70 @@
+/**
+ * AccessQueue.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Bounded lock free queue of items processed with UI.access. Any thread can
+ * offer items without waiting for session lock, and all items queued
+ * meanwhile are processed in one UI.access. Items offered while no UI is
+ * defined wait until UI is defined.
+ *
+ * @param <T>
+ *            Type of items
+ */
+@SuppressWarnings("serial")
+abstract class AccessQueue<T> extends BatchQueue<T> {
+
+    private transient volatile UI ui;
+
+    AccessQueue(int capacity) {
+        super(capacity);
+    }
+
+    /**
+     * Set UI accessed when processing items
+     *
+     * @param ui
+     *            UI, null to process nothing until UI is defined again
+     */
+    void setUI(UI ui) {
+        this.ui = ui;
+        if (ui != null) {
+            // Earlier UI might have been lost with access pending
+            resetDrain();
+            scheduleDrain();
+        }
+    }
+
+    @Override
+    protected boolean submitDrain(Runnable drain) {
+        UI target = ui;
+        if (target == null) {
+            return false;
+        }
+        try {
+            target.access(drain);
+            return true;
+        } catch (UIDetachedException e) {
+            return false;
+        }
+    }
+}
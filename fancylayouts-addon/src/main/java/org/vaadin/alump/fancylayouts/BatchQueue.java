@@ -0,0 +1,155 @@
+/**
+ * BatchQueue.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded lock free queue whose items are processed in batches. Any thread
+ * can offer items, and all items queued before the drain task gets to run
+ * are processed together. Only one drain task is pending or running at a
+ * time, so items are processed serially in order they were offered.
+ *
+ * @param <T>
+ *            Type of items
+ */
+@SuppressWarnings("serial")
+abstract class BatchQueue<T> implements Serializable {
+
+    private final ConcurrentLinkedQueue<T> items = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private volatile int capacity;
+
+    BatchQueue(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Process items, called by drain task
+     *
+     * @param batch
+     *            Items in order they were offered
+     */
+    protected abstract void process(List<T> batch);
+
+    /**
+     * Arrange drain task to be run later
+     *
+     * @param drain
+     *            Drain task
+     * @return true if task will be run, false if it can not be run now
+     */
+    protected abstract boolean submitDrain(Runnable drain);
+
+    /**
+     * Add item to queue. Can be called from any thread.
+     *
+     * @param item
+     *            Item added
+     * @return true if added, false if queue was full
+     */
+    boolean offer(T item) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        items.add(item);
+        scheduleDrain();
+        return true;
+    }
+
+    void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        this.capacity = capacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get number of items waiting
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Forget pending drain task, used when it is known it will never run
+     */
+    protected void resetDrain() {
+        drainScheduled.set(false);
+    }
+
+    /**
+     * Submit drain task if there are items waiting and drain is not already
+     * pending
+     */
+    protected void scheduleDrain() {
+        if (items.isEmpty() || !drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        boolean submitted = false;
+        try {
+            submitted = submitDrain(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        } finally {
+            if (!submitted) {
+                drainScheduled.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<T>();
+        T item;
+        while ((item = items.poll()) != null) {
+            batch.add(item);
+        }
+        size.addAndGet(-batch.size());
+
+        try {
+            if (!batch.isEmpty()) {
+                process(batch);
+            }
+        } finally {
+            // Flag is kept set while processing, so items offered meanwhile
+            // do not start a concurrent drain. They are picked up here.
+            drainScheduled.set(false);
+            scheduleDrain();
+        }
+    }
+}
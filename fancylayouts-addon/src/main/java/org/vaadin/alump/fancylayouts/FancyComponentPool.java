@@ -0,0 +1,269 @@
+/**
+ * FancyComponentPool.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.vaadin.data.ValueProvider;
+import com.vaadin.server.SerializableBiConsumer;
+import com.vaadin.server.SerializableFunction;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
+
+/**
+ * Bounded pool of item components. Can be used as item renderer (e.g. with
+ * {@link FancyInfiniteCssLayout}). When bound to layout with
+ * {@link #recycleFrom(FancyCssLayout)}, components detached from layout are
+ * returned to pool and rebound to new items instead of creating new
+ * components. Detached components are only pooled when pool is used next
+ * time, so components just moved inside layout are not pooled.
+ *
+ * @param <T>
+ *            Type of items
+ * @param <C>
+ *            Type of item components
+ */
+@SuppressWarnings("serial")
+public class FancyComponentPool<T, C extends Component> implements
+        ValueProvider<T, C>, ComponentContainer.ComponentDetachListener {
+
+    public final static int DEFAULT_MAX_PER_TYPE = 50;
+
+    private final SerializableFunction<T, C> factory;
+    private final SerializableBiConsumer<C, T> binder;
+    private final SerializableFunction<T, ?> typeKey;
+    private int maxPerType = DEFAULT_MAX_PER_TYPE;
+
+    private final Map<Object, Deque<C>> pooled = new HashMap<Object, Deque<C>>();
+
+    /**
+     * Type keys of components given out by this pool
+     */
+    private transient Map<C, Object> issued;
+
+    /**
+     * Components detached from recycled layouts, not yet checked
+     */
+    private final Set<Component> detached = new LinkedHashSet<Component>();
+
+    /**
+     * Create pool where type of item is its class
+     *
+     * @param factory
+     *            Creates new component for item
+     * @param binder
+     *            Binds item to component (called for new and reused
+     *            components)
+     */
+    public FancyComponentPool(SerializableFunction<T, C> factory,
+            SerializableBiConsumer<C, T> binder) {
+        this(factory, binder, item -> item.getClass());
+    }
+
+    /**
+     * Create pool
+     *
+     * @param factory
+     *            Creates new component for item
+     * @param binder
+     *            Binds item to component (called for new and reused
+     *            components)
+     * @param typeKey
+     *            Resolves type of item. Components are only reused for items
+     *            of same type.
+     */
+    public FancyComponentPool(SerializableFunction<T, C> factory,
+            SerializableBiConsumer<C, T> binder,
+            SerializableFunction<T, ?> typeKey) {
+        if (factory == null || binder == null || typeKey == null) {
+            throw new IllegalArgumentException(
+                    "Factory, binder and type key have to be defined");
+        }
+        this.factory = factory;
+        this.binder = binder;
+        this.typeKey = typeKey;
+    }
+
+    /**
+     * Set maximum number of unused components kept per item type
+     *
+     * @param max
+     *            Maximum number of components
+     */
+    public void setMaxPerType(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        maxPerType = max;
+        for (Deque<C> queue : pooled.values()) {
+            while (queue.size() > max) {
+                queue.removeLast();
+            }
+        }
+    }
+
+    public int getMaxPerType() {
+        return maxPerType;
+    }
+
+    private Map<C, Object> getIssued() {
+        if (issued == null) {
+            issued = new WeakHashMap<C, Object>();
+        }
+        return issued;
+    }
+
+    /**
+     * Get component for item. Unused component of same type is reused if
+     * available, otherwise new one is created.
+     *
+     * @param item
+     *            Item presented
+     * @return Component bound to item
+     */
+    public C acquire(T item) {
+        releaseDetached();
+        Object key = typeKey.apply(item);
+        C component = null;
+
+        Deque<C> queue = pooled.get(key);
+        while (queue != null && !queue.isEmpty() && component == null) {
+            C candidate = queue.removeFirst();
+            // Skip components that got added somewhere else meanwhile
+            if (candidate.getParent() == null) {
+                component = candidate;
+            }
+        }
+
+        if (component == null) {
+            component = factory.apply(item);
+        }
+        getIssued().put(component, key);
+        binder.accept(component, item);
+        return component;
+    }
+
+    /**
+     * Return component to pool. Only components given out by this pool are
+     * accepted.
+     *
+     * @param component
+     *            Component not used anymore
+     * @return true if component was pooled
+     */
+    public boolean release(Component component) {
+        if (component.getParent() != null) {
+            return false;
+        }
+        Object key = getIssued().remove(component);
+        if (key == null) {
+            return false;
+        }
+
+        Deque<C> queue = pooled.get(key);
+        if (queue == null) {
+            queue = new ArrayDeque<C>();
+            pooled.put(key, queue);
+        }
+        if (queue.size() >= maxPerType) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        C pooledComponent = (C) component;
+        queue.addFirst(pooledComponent);
+        return true;
+    }
+
+    /**
+     * Return components detached from given layout to this pool. Not
+     * supported with {@link FancyWindowedCssLayout}, as it detaches items that
+     * are still in use.
+     *
+     * @param layout
+     *            Layout using components of this pool
+     * @return Registration to stop recycling
+     */
+    public Registration recycleFrom(FancyCssLayout layout) {
+        if (layout instanceof FancyWindowedCssLayout) {
+            throw new IllegalArgumentException(
+                    "Windowed layout can not be used with component pool");
+        }
+        return layout.addComponentDetachListener(this);
+    }
+
+    /**
+     * Get number of unused components in pool
+     *
+     * @return Number of components
+     */
+    public int getPooledCount() {
+        releaseDetached();
+        int count = 0;
+        for (Deque<C> queue : pooled.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    /**
+     * Drop all unused components
+     */
+    public void clear() {
+        detached.clear();
+        pooled.clear();
+    }
+
+    /**
+     * Release components detached from recycled layouts that are still
+     * without parent. Components that were only moved inside layout have
+     * parent again.
+     */
+    private void releaseDetached() {
+        if (detached.isEmpty()) {
+            return;
+        }
+        for (Component component : detached) {
+            release(component);
+        }
+        detached.clear();
+    }
+
+    @Override
+    public C apply(T item) {
+        return acquire(item);
+    }
+
+    @Override
+    public void componentDetachedFromContainer(
+            ComponentContainer.ComponentDetachEvent event) {
+        // Layout may attach component again in the same operation
+        Component component = event.getDetachedComponent();
+        if (getIssued().containsKey(component)) {
+            detached.add(component);
+        }
+    }
+}
@@ -19,10 +19,16 @@
 package org.vaadin.alump.fancylayouts;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.vaadin.shared.Registration;
 import org.vaadin.alump.fancylayouts.gwt.client.connect.FancyCssLayoutClientRpc;
@@ -36,8 +42,10 @@ import com.vaadin.shared.Connector;
 import com.vaadin.shared.EventId;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.ui.AbstractLayout;
+import com.vaadin.ui.AbstractSingleComponentContainer;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.ComponentContainer;
+import com.vaadin.ui.UI;
 
 /**
  * FancyCssLayout is similiar to Vaadin CssLayout. But it also has
@@ -49,9 +57,60 @@ public class FancyCssLayout extends AbstractLayout implements
         LayoutClickNotifier, ComponentContainer.ComponentAttachListener,
         ComponentContainer.ComponentDetachListener, FancyAnimator {
 
-    protected List<Component> components = new ArrayList<Component>();
+    /**
+     * Children in order. Indexed so that lookups, inserts and removals do not
+     * need to scan the whole list.
+     */
+    protected List<Component> components = new IndexedList<Component>();
     protected Set<Component> fancyRemoveComponents = new HashSet<Component>();
 
+    /**
+     * Fancy removals requested during this round trip. Sent to client as one
+     * batch before response.
+     */
+    private final List<Component> pendingFancyRemoves = new ArrayList<Component>();
+
+    /**
+     * Default time given to client to finish fancy removal before server
+     * detaches component itself.
+     */
+    public final static int DEFAULT_REMOVE_GRACE_PERIOD_MS = 10000;
+
+    private int removeGracePeriodMs = DEFAULT_REMOVE_GRACE_PERIOD_MS;
+
+    /**
+     * Deadlines of fancy removals sent to client, in order they were sent
+     */
+    private final Map<Component, Long> removeDeadlines = new LinkedHashMap<Component, Long>();
+    private transient ScheduledFuture<?> removeWatchdog;
+    private long removeWatchdogTime = Long.MAX_VALUE;
+
+    /**
+     * Policy used to select evicted components when layout has more
+     * components than allowed (see {@link FancyCssLayout#setMaxComponents})
+     */
+    public enum EvictionPolicy {
+        /**
+         * Components added first are evicted first
+         */
+        OLDEST_FIRST,
+        /**
+         * Components added last (before the ones causing overflow) are
+         * evicted first
+         */
+        NEWEST_FIRST;
+    }
+
+    private int maxComponents = 0;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.OLDEST_FIRST;
+    private boolean evictWithFade = true;
+
+    /**
+     * Components not being removed, in order they were added. Only tracked
+     * when maximum amount of components is defined.
+     */
+    private List<Component> addOrder = null;
+
     private final FancyCssLayoutServerRpc rpc = new FancyCssLayoutServerRpc() {
         @Override
         public void remove(Connector child) {
@@ -59,6 +118,18 @@ public class FancyCssLayout extends AbstractLayout implements
             removeComponent(removable);
         }
 
+        @Override
+        public void removeAll(List<Connector> children) {
+            boolean changed = false;
+            for (Connector child : children) {
+                changed |= detachChild((Component) child);
+            }
+            if (changed) {
+                markAsDirty();
+                childrenRemoved();
+            }
+        }
+
         @Override
         public void layoutClick(MouseEventDetails mouseDetails,
                 Connector clickedConnector) {
@@ -81,16 +152,31 @@ public class FancyCssLayout extends AbstractLayout implements
      */
     @Override
     public void replaceComponent(Component oldComponent, Component newComponent) {
-        if (components.contains(oldComponent)) {
-            int index = components.indexOf(oldComponent);
+        int index = components.indexOf(oldComponent);
+        if (index < 0) {
+            return;
+        }
+        int newIndex = components.indexOf(newComponent);
+        if (newIndex >= 0) {
+            // Both are children, just swap positions
+            components.set(newIndex, oldComponent);
+            components.set(index, newComponent);
+            markAsDirty();
+        } else {
             components.set(index, newComponent);
             super.removeComponent(oldComponent);
             super.addComponent(newComponent);
+            trackRemoved(oldComponent);
+            trackAdded(Collections.singletonList(newComponent));
         }
     }
 
     @Override
     public void addComponent(Component c) {
+        if (components.contains(c)) {
+            // Already child, move to the end
+            removeComponent(c);
+        }
         components.add(c);
         try {
             super.addComponent(c);
@@ -99,6 +185,7 @@ public class FancyCssLayout extends AbstractLayout implements
             components.remove(c);
             throw e;
         }
+        trackAdded(Collections.singletonList(c));
     }
 
     /**
@@ -110,6 +197,14 @@ public class FancyCssLayout extends AbstractLayout implements
      *            Index where component is added
      */
     public void addComponent(Component c, int index) {
+        int currentIndex = components.indexOf(c);
+        if (currentIndex >= 0) {
+            // When c is removed, all components after it are shifted down
+            if (index > currentIndex) {
+                --index;
+            }
+            removeComponent(c);
+        }
         components.add(index, c);
         try {
             super.addComponent(c);
@@ -118,17 +213,20 @@ public class FancyCssLayout extends AbstractLayout implements
             components.remove(c);
             throw e;
         }
+        trackAdded(Collections.singletonList(c));
     }
 
     @Override
     public void removeComponent(Component c) {
-        if (!components.contains(c)) {
+        if (!components.remove(c)) {
             return;
         }
-        components.remove(c);
         fancyRemoveComponents.remove(c);
+        removeDeadlines.remove(c);
+        trackRemoved(c);
         super.removeComponent(c);
         markAsDirty();
+        childrenRemoved();
     }
 
     /**
@@ -148,7 +246,572 @@ public class FancyCssLayout extends AbstractLayout implements
         }
 
         fancyRemoveComponents.add(c);
-        getRpcProxy(FancyCssLayoutClientRpc.class).fancyRemove(c);
+        pendingFancyRemoves.add(c);
+        trackRemoved(c);
+        markAsDirty();
+        childrenRemoved();
+    }
+
+    /**
+     * Add multiple components to given index. Components are added to layout
+     * in one go, so client side will receive only one hierarchy change.
+     * 
+     * @param newComponents
+     *            Components added, in order
+     * @param index
+     *            Index where first of the components is added
+     */
+    public void addComponents(Collection<? extends Component> newComponents,
+            int index) {
+        if (index < 0 || index > components.size()) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+
+        // Validate all before detaching any of the components
+        validateNewComponents(newComponents);
+
+        // Children of this layout are only moved, without detaching those
+        Set<Component> moved = new HashSet<Component>();
+        for (Component c : newComponents) {
+            int currentIndex = components.indexOf(c);
+            if (currentIndex >= 0) {
+                // When c is removed, all components after it are shifted down
+                if (currentIndex < index) {
+                    --index;
+                }
+                components.remove(c);
+                if (fancyRemoveComponents.remove(c)) {
+                    // Fading out stopped, counted as added again
+                    removeDeadlines.remove(c);
+                } else {
+                    moved.add(c);
+                }
+            } else if (c.getParent() != null && c.getParent() != this) {
+                AbstractSingleComponentContainer.removeFromParent(c);
+            }
+        }
+
+        List<Component> added = new ArrayList<Component>(newComponents.size());
+        for (Component c : newComponents) {
+            if (components.contains(c)) {
+                // Same component given twice
+                continue;
+            }
+            components.add(index, c);
+            ++index;
+            if (c.getParent() != this) {
+                c.setParent(this);
+                fireComponentAttachEvent(c);
+            }
+            if (!moved.contains(c)) {
+                added.add(c);
+            }
+        }
+
+        markAsDirty();
+        trackAdded(added);
+    }
+
+    /**
+     * Check that components can be added to this layout
+     * 
+     * @param newComponents
+     *            Components added
+     * @throws IllegalArgumentException
+     *             if any of the components is null or contains this layout
+     */
+    protected void validateNewComponents(
+            Collection<? extends Component> newComponents) {
+        if (newComponents == null) {
+            throw new IllegalArgumentException("Components can not be null");
+        }
+        for (Component c : newComponents) {
+            if (c == null) {
+                throw new IllegalArgumentException("Component can not be null");
+            }
+            if (isOrHasAncestor(c)) {
+                throw new IllegalArgumentException(
+                        "Component cannot be added inside it's own content");
+            }
+        }
+    }
+
+    /**
+     * Remove multiple components without transitions. Components are removed
+     * from layout in one go.
+     * 
+     * @param removed
+     *            Components removed
+     */
+    public void removeComponents(Collection<? extends Component> removed) {
+        removeComponents(removed, false);
+    }
+
+    /**
+     * Remove multiple components.
+     * 
+     * @param removed
+     *            Components removed
+     * @param fancy
+     *            true to fade out removed components (see
+     *            {@link #fancyRemoveComponents(Collection)}), false to
+     *            remove those instantly
+     */
+    public void removeComponents(Collection<? extends Component> removed,
+            boolean fancy) {
+        if (fancy) {
+            fancyRemoveComponents(removed);
+            return;
+        }
+
+        boolean changed = false;
+        for (Component c : removed) {
+            changed |= detachChild(c);
+        }
+        if (changed) {
+            markAsDirty();
+            childrenRemoved();
+        }
+    }
+
+    /**
+     * Remove all components without transitions. Components are removed from
+     * layout in one go.
+     */
+    @Override
+    public void removeAllComponents() {
+        removeComponents(new ArrayList<Component>(components));
+    }
+
+    /**
+     * Like removeComponents, but will add transitions to removal. All fancy
+     * removals requested during one server round trip are sent to client as
+     * one batch.
+     * 
+     * @param removed
+     *            Components removed
+     */
+    public void fancyRemoveComponents(Collection<? extends Component> removed) {
+        boolean changed = false;
+        for (Component c : removed) {
+            if (components.contains(c) && fancyRemoveComponents.add(c)) {
+                pendingFancyRemoves.add(c);
+                trackRemoved(c);
+                changed = true;
+            }
+        }
+        if (changed) {
+            markAsDirty();
+            childrenRemoved();
+        }
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        if (!pendingFancyRemoves.isEmpty()) {
+            List<Connector> connectors = new ArrayList<Connector>(
+                    pendingFancyRemoves.size());
+            long deadline = System.currentTimeMillis() + removeGracePeriodMs;
+            for (Component c : pendingFancyRemoves) {
+                // Skip children removed before response
+                if (fancyRemoveComponents.contains(c)) {
+                    connectors.add(c);
+                    removeDeadlines.put(c, deadline);
+                }
+            }
+            pendingFancyRemoves.clear();
+            if (!connectors.isEmpty()) {
+                getRpcProxy(FancyCssLayoutClientRpc.class).fancyRemoveAll(
+                        connectors);
+                scheduleRemoveWatchdog();
+            }
+        }
+    }
+
+    /**
+     * Set time given to client side to finish fancy removal. If client has not
+     * reported removal done when time has passed (e.g. transition end event
+     * was never fired), server will detach component. Timing is handled by
+     * shared {@link FancyScheduler}.
+     * 
+     * @param millisecs
+     *            Grace period in milliseconds, 0 to wait for client forever
+     */
+    public void setRemoveGracePeriod(int millisecs) {
+        if (millisecs < 0) {
+            throw new IllegalArgumentException("Negative time not accepted");
+        }
+        removeGracePeriodMs = millisecs;
+        if (millisecs == 0) {
+            removeDeadlines.clear();
+            cancelRemoveWatchdog();
+        }
+    }
+
+    /**
+     * Get time given to client side to finish fancy removal.
+     * 
+     * @return Grace period in milliseconds, 0 if server waits forever
+     */
+    public int getRemoveGracePeriod() {
+        return removeGracePeriodMs;
+    }
+
+    private void scheduleRemoveWatchdog() {
+        if (removeGracePeriodMs == 0 || removeDeadlines.isEmpty()) {
+            return;
+        }
+        UI ui = getUI();
+        if (ui == null) {
+            return;
+        }
+
+        // Deadlines are in order they were sent, so first one is the earliest
+        long next = removeDeadlines.values().iterator().next();
+        if (removeWatchdog != null && removeWatchdogTime <= next) {
+            return;
+        }
+
+        cancelRemoveWatchdog();
+        final AtomicReference<ScheduledFuture<?>> self = new AtomicReference<ScheduledFuture<?>>();
+        removeWatchdogTime = next;
+        removeWatchdog = FancyScheduler.scheduleAccess(ui, new Runnable() {
+            @Override
+            public void run() {
+                // Cancelled run may still get the lock after newer watchdog
+                // has been scheduled
+                if (removeWatchdog != self.get()) {
+                    return;
+                }
+                removeWatchdog = null;
+                removeWatchdogTime = Long.MAX_VALUE;
+                detachExpiredRemovals();
+            }
+        }, next - System.currentTimeMillis());
+        self.set(removeWatchdog);
+    }
+
+    private void cancelRemoveWatchdog() {
+        if (removeWatchdog != null) {
+            removeWatchdog.cancel(false);
+            removeWatchdog = null;
+        }
+        removeWatchdogTime = Long.MAX_VALUE;
+    }
+
+    /**
+     * Detach components whose fancy removal was not finished by client in
+     * time.
+     */
+    protected void detachExpiredRemovals() {
+        long now = System.currentTimeMillis();
+        List<Component> expired = new ArrayList<Component>();
+        for (Map.Entry<Component, Long> entry : removeDeadlines.entrySet()) {
+            if (entry.getValue() > now) {
+                break;
+            }
+            expired.add(entry.getKey());
+        }
+
+        if (!expired.isEmpty()) {
+            for (Component c : expired) {
+                detachChild(c);
+            }
+            markAsDirty();
+            childrenRemoved();
+        }
+
+        scheduleRemoveWatchdog();
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        scheduleRemoveWatchdog();
+    }
+
+    @Override
+    public void detach() {
+        cancelRemoveWatchdog();
+        super.detach();
+    }
+
+    /**
+     * Replace all children of layout with given components. Components
+     * already in layout are kept (and reordered), others are added or removed.
+     * Change is done in one go, so client side will receive only one hierarchy
+     * change.
+     * 
+     * @param newComponents
+     *            New children of layout, in order
+     */
+    public void setComponents(List<? extends Component> newComponents) {
+        setComponents(newComponents, false);
+    }
+
+    /**
+     * Replace all children of layout with given components. Components
+     * already in layout are kept (and reordered), others are added or removed.
+     * 
+     * @param newComponents
+     *            New children of layout, in order
+     * @param fancyRemove
+     *            true if components not anymore in layout should be faded out
+     *            as one batch. Those will stay in their current positions until
+     *            faded out. Components already being fancy removed are always
+     *            kept until faded out.
+     */
+    public void setComponents(List<? extends Component> newComponents,
+            boolean fancyRemove) {
+        validateNewComponents(newComponents);
+        Set<Component> kept = new HashSet<Component>(newComponents);
+
+        List<Component> order = new ArrayList<Component>(kept.size());
+        Set<Component> seen = new HashSet<Component>();
+        for (Component c : newComponents) {
+            if (seen.add(c)) {
+                order.add(c);
+            }
+        }
+
+        List<Component> removed = new ArrayList<Component>();
+        int oldIndex = 0;
+        for (Component c : components) {
+            if (!kept.contains(c)) {
+                boolean fading = fancyRemoveComponents.contains(c);
+                if (!fading) {
+                    removed.add(c);
+                }
+                if (fancyRemove || fading) {
+                    // Keep in place while fading out
+                    order.add(Math.min(oldIndex, order.size()), c);
+                }
+            }
+            ++oldIndex;
+        }
+
+        if (!fancyRemove) {
+            for (Component c : removed) {
+                detachChild(c);
+            }
+        }
+
+        for (Component c : order) {
+            if (c.getParent() != null && c.getParent() != this) {
+                AbstractSingleComponentContainer.removeFromParent(c);
+            }
+        }
+
+        List<Component> attached = new ArrayList<Component>();
+        for (Component c : order) {
+            if (!components.contains(c)) {
+                attached.add(c);
+            }
+        }
+
+        components.clear();
+        components.addAll(order);
+        for (Component c : attached) {
+            c.setParent(this);
+            fireComponentAttachEvent(c);
+        }
+        trackAdded(attached);
+
+        markAsDirty();
+
+        if (fancyRemove) {
+            fancyRemoveComponents(removed);
+        }
+    }
+
+    /**
+     * Called after one or more children have been removed, or have started
+     * fading out. Does nothing by default.
+     */
+    protected void childrenRemoved() {
+    }
+
+    /**
+     * Detach given child without marking layout dirty.
+     * 
+     * @param c
+     *            Child detached
+     * @return true if child was removed
+     */
+    protected boolean detachChild(Component c) {
+        if (!components.remove(c)) {
+            return false;
+        }
+        fancyRemoveComponents.remove(c);
+        removeDeadlines.remove(c);
+        trackRemoved(c);
+        if (c.getParent() == this) {
+            c.setParent(null);
+            fireComponentDetachEvent(c);
+        }
+        return true;
+    }
+
+    /**
+     * Limit number of components in layout. When more components are added,
+     * components are evicted in the same server round trip, with fade out.
+     * 
+     * @param max
+     *            Maximum number of components, 0 for no limit
+     * @param policy
+     *            Policy used to select evicted components
+     */
+    public void setMaxComponents(int max, EvictionPolicy policy) {
+        setMaxComponents(max, policy, true);
+    }
+
+    /**
+     * Limit number of components in layout. When more components are added,
+     * components are evicted in the same server round trip. Components being
+     * fancy removed are not counted.
+     * 
+     * @param max
+     *            Maximum number of components, 0 for no limit
+     * @param policy
+     *            Policy used to select evicted components
+     * @param fade
+     *            true to fade out evicted components, false to remove them
+     *            instantly
+     */
+    public void setMaxComponents(int max, EvictionPolicy policy, boolean fade) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy can not be null");
+        }
+
+        maxComponents = max;
+        evictionPolicy = policy;
+        evictWithFade = fade;
+
+        if (max == 0) {
+            addOrder = null;
+        } else {
+            if (addOrder == null) {
+                // Order of additions is unknown, use order of components
+                addOrder = new IndexedList<Component>();
+                for (Component c : components) {
+                    if (!fancyRemoveComponents.contains(c)) {
+                        addOrder.add(c);
+                    }
+                }
+            }
+            evictOverflow(Collections.<Component> emptyList());
+        }
+    }
+
+    /**
+     * Get maximum number of components
+     * 
+     * @return Maximum number of components, 0 if not limited
+     */
+    public int getMaxComponents() {
+        return maxComponents;
+    }
+
+    /**
+     * Get policy used to select evicted components
+     * 
+     * @return Eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    private void trackAdded(List<Component> added) {
+        if (addOrder == null || added.isEmpty()) {
+            return;
+        }
+        for (Component c : added) {
+            if (!addOrder.contains(c)) {
+                addOrder.add(c);
+            }
+        }
+        evictOverflow(added);
+    }
+
+    private void trackRemoved(Component c) {
+        if (addOrder != null) {
+            addOrder.remove(c);
+        }
+    }
+
+    /**
+     * Evict components over the maximum amount. Components just added are
+     * only evicted if there is not enough other components to evict.
+     * 
+     * @param added
+     *            Components just added
+     */
+    private void evictOverflow(List<Component> added) {
+        int excess = addOrder.size() - maxComponents;
+        if (excess <= 0) {
+            return;
+        }
+
+        Set<Component> justAdded = new HashSet<Component>(added);
+        List<Component> evicted = new ArrayList<Component>(excess);
+        int size = addOrder.size();
+        for (int pass = 0; pass < 2 && evicted.size() < excess; ++pass) {
+            boolean takeAdded = pass == 1;
+            for (int i = 0; i < size && evicted.size() < excess; ++i) {
+                int index = evictionPolicy == EvictionPolicy.OLDEST_FIRST ? i
+                        : size - 1 - i;
+                Component c = addOrder.get(index);
+                if (justAdded.contains(c) == takeAdded) {
+                    evicted.add(c);
+                }
+            }
+        }
+
+        if (evictWithFade) {
+            fancyRemoveComponents(evicted);
+        } else {
+            removeComponents(evicted);
+        }
+    }
+
+    /**
+     * Set number of unused item wrapper elements client side keeps for reuse.
+     * Reduces DOM churn when items are added and removed constantly. See
+     * {@link FancyComponentPool} for reusing server side components.
+     * 
+     * @param size
+     *            Maximum number of pooled wrappers, 0 to disable (default)
+     */
+    public void setWrapperPoolSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size not accepted");
+        }
+        getState().wrapperPoolSize = size;
+    }
+
+    /**
+     * Get number of unused item wrapper elements client side keeps for reuse.
+     * 
+     * @return Maximum number of pooled wrappers
+     */
+    public int getWrapperPoolSize() {
+        return getState().wrapperPoolSize;
+    }
+
+    /**
+     * Get index of given child component
+     * 
+     * @param c
+     *            Child component
+     * @return Index of component, or -1 if not child of this layout
+     */
+    public int getComponentIndex(Component c) {
+        return components.indexOf(c);
     }
 
     /**
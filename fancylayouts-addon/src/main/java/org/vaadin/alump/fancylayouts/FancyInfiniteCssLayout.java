@@ -0,0 +1,358 @@
+/**
+ * FancyInfiniteCssLayout.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.vaadin.alump.fancylayouts.gwt.client.connect.FancyInfiniteCssLayoutServerRpc;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyInfiniteCssLayoutState;
+
+import com.vaadin.data.ValueProvider;
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * FancyCssLayout that lazily loads its items from DataProvider. Next page is
+ * fetched when client side scrolls to the end of loaded items. Fetching is
+ * done outside of session lock, and fetched items are rendered to components
+ * with given item renderer. Appended pages are faded in like any other added
+ * components.
+ * <p>
+ * Pages are added with UI.access, so push (or polling) should be enabled to
+ * get pages shown without waiting next request from client.
+ * <p>
+ * If fetching of page fails, loading stops until {@link #retry()} or
+ * {@link #refresh()} is called.
+ *
+ * @param <T>
+ *            Type of items
+ */
+@SuppressWarnings("serial")
+public class FancyInfiniteCssLayout<T> extends FancyCssLayout {
+
+    public final static int DEFAULT_PAGE_SIZE = 20;
+
+    private DataProvider<T, ?> dataProvider;
+    private final ValueProvider<T, ? extends Component> itemRenderer;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private transient Executor executor = null;
+
+    private int loadedCount = 0;
+    private int generation = 0;
+    private Registration dataProviderListener = null;
+
+    private final FancyInfiniteCssLayoutServerRpc infiniteRpc = new FancyInfiniteCssLayoutServerRpc() {
+        @Override
+        public void loadMore() {
+            loadNextPage();
+        }
+    };
+
+    /**
+     * Create new infinite layout
+     *
+     * @param dataProvider
+     *            Data provider of items
+     * @param itemRenderer
+     *            Creates component presenting item
+     */
+    public FancyInfiniteCssLayout(DataProvider<T, ?> dataProvider,
+            ValueProvider<T, ? extends Component> itemRenderer) {
+        super();
+        if (dataProvider == null || itemRenderer == null) {
+            throw new IllegalArgumentException(
+                    "Data provider and item renderer has to be defined");
+        }
+        this.dataProvider = dataProvider;
+        this.itemRenderer = itemRenderer;
+        registerRpc(infiniteRpc, FancyInfiniteCssLayoutServerRpc.class);
+    }
+
+    @Override
+    protected FancyInfiniteCssLayoutState getState() {
+        return (FancyInfiniteCssLayoutState) super.getState();
+    }
+
+    @Override
+    protected FancyInfiniteCssLayoutState getState(boolean markAsDirty) {
+        return (FancyInfiniteCssLayoutState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Set number of items fetched at once
+     *
+     * @param items
+     *            Page size
+     */
+    public void setPageSize(int items) {
+        if (items <= 0) {
+            throw new IllegalArgumentException("Page size has to be positive");
+        }
+        pageSize = items;
+    }
+
+    /**
+     * Get number of items fetched at once
+     *
+     * @return Page size
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Set executor used to fetch pages. By default shared worker pool of
+     * {@link FancyScheduler} is used.
+     *
+     * @param executor
+     *            Executor, null to use default
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Change data provider. All loaded items are removed and loading starts
+     * again from the beginning.
+     *
+     * @param dataProvider
+     *            New data provider
+     */
+    public void setDataProvider(DataProvider<T, ?> dataProvider) {
+        if (dataProvider == null) {
+            throw new IllegalArgumentException("Data provider can not be null");
+        }
+        removeDataProviderListener();
+        this.dataProvider = dataProvider;
+        if (isAttached()) {
+            addDataProviderListener();
+        }
+        refresh();
+    }
+
+    public DataProvider<T, ?> getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Get number of items loaded so far
+     *
+     * @return Number of items loaded
+     */
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * Check if all items have been loaded
+     *
+     * @return true if there are no more items to load
+     */
+    public boolean isAllLoaded() {
+        return !getState(false).hasMore;
+    }
+
+    /**
+     * Check if fetching of last page failed. When failed, more items are not
+     * loaded before {@link #retry()} or {@link #refresh()} is called.
+     *
+     * @return true if loading failed
+     */
+    public boolean isLoadFailed() {
+        return getState(false).failed;
+    }
+
+    /**
+     * Retry loading after fetching of page has failed
+     */
+    public void retry() {
+        if (getState(false).failed) {
+            getState().failed = false;
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Remove all loaded items and start loading again from the beginning.
+     * Called automatically (with UI.access) when data provider reports
+     * change.
+     */
+    public void refresh() {
+        ++generation;
+        loadedCount = 0;
+        getState().hasMore = true;
+        getState().loading = false;
+        getState().failed = false;
+        removeAllComponents();
+    }
+
+    /**
+     * Start fetching next page, if not already loading, loading has not
+     * failed and there are items left. Normally called by client side.
+     */
+    public void loadNextPage() {
+        FancyInfiniteCssLayoutState state = getState(false);
+        final UI ui = getUI();
+        if (ui == null || state.loading || state.failed || !state.hasMore) {
+            return;
+        }
+
+        getState().loading = true;
+
+        final int myGeneration = generation;
+        final int offset = loadedCount;
+        final int limit = pageSize;
+        final DataProvider<T, ?> provider = dataProvider;
+
+        Executor used = executor != null ? executor : new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                FancyScheduler.execute(command);
+            }
+        };
+
+        try {
+            used.execute(new Runnable() {
+                @Override
+                public void run() {
+                    List<T> page = null;
+                    RuntimeException error = null;
+                    try {
+                        page = fetch(provider, offset, limit);
+                    } catch (RuntimeException e) {
+                        error = e;
+                    }
+
+                    final List<T> fetched = page;
+                    final RuntimeException failure = error;
+                    try {
+                        ui.access(new Runnable() {
+                            @Override
+                            public void run() {
+                                pageFetched(myGeneration, limit, fetched,
+                                        failure);
+                            }
+                        });
+                    } catch (UIDetachedException e) {
+                        // Nobody to show the page to, loading is reset when
+                        // attached again
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pageFetched(myGeneration, limit, null, e);
+        }
+    }
+
+    private static <T, F> List<T> fetch(DataProvider<T, F> provider,
+            int offset, int limit) {
+        return provider
+                .fetch(new Query<T, F>(offset, limit, Collections
+                        .<QuerySortOrder> emptyList(), null, null))
+                .collect(Collectors.<T> toList());
+    }
+
+    /**
+     * Called with session lock when page has been fetched
+     */
+    private void pageFetched(int fetchGeneration, int limit, List<T> page,
+            RuntimeException error) {
+        if (fetchGeneration != generation) {
+            // Refreshed while fetching
+            return;
+        }
+
+        getState().loading = false;
+
+        if (error != null) {
+            Logger.getLogger(FancyInfiniteCssLayout.class.getName()).log(
+                    Level.SEVERE, "Failed to fetch items", error);
+            // Do not let client request same page again until retried
+            getState().failed = true;
+            return;
+        }
+
+        loadedCount += page.size();
+        // Page size may have been changed while fetching
+        if (page.size() < limit) {
+            getState().hasMore = false;
+        }
+
+        List<Component> rendered = new ArrayList<Component>(page.size());
+        for (T item : page) {
+            rendered.add(itemRenderer.apply(item));
+        }
+        addComponents(rendered, getComponentCount());
+    }
+
+    private void addDataProviderListener() {
+        // Data providers are often refreshed from background threads
+        dataProviderListener = dataProvider.addDataProviderListener(event -> {
+            UI ui = getUI();
+            if (ui == null) {
+                return;
+            }
+            try {
+                ui.access(() -> {
+                    if (isAttached()) {
+                        refresh();
+                    }
+                });
+            } catch (UIDetachedException e) {
+                // Layout is being detached with its UI
+            }
+        });
+    }
+
+    private void removeDataProviderListener() {
+        if (dataProviderListener != null) {
+            dataProviderListener.remove();
+            dataProviderListener = null;
+        }
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        addDataProviderListener();
+        if (getState(false).loading) {
+            // Result of fetch started before detach might never arrive
+            ++generation;
+            getState().loading = false;
+        }
+    }
+
+    @Override
+    public void detach() {
+        removeDataProviderListener();
+        super.detach();
+    }
+}
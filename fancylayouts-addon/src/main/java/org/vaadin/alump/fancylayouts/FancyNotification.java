@@ -14,6 +14,8 @@ public class FancyNotification extends CssLayout {
     private final Label titleLabel = new Label();
     private final Label descLabel = new Label();
     private final Image iconImage = new Image();
+    private Label countLabel = null;
+    private NotificationPriority priority = NotificationPriority.NORMAL;
 
     public FancyNotification(Object id, String title) {
         this(id, title, null, null, null);
@@ -41,22 +43,12 @@ public class FancyNotification extends CssLayout {
         }
 
         titleLabel.setStyleName("fancy-notif-title");
-        titleLabel.setVisible(title != null);
         addComponent(titleLabel);
-        if (title != null) {
-            titleLabel.setValue(title);
-        } else {
-            addStyleName("fancy-notif-notitle");
-        }
+        setTitle(title);
 
         descLabel.setStyleName("fancy-notif-desc");
-        descLabel.setVisible(description != null);
         addComponent(descLabel);
-        if (description != null) {
-            descLabel.setValue(description);
-        } else {
-            addStyleName("fancy-notif-nodesc");
-        }
+        setDescription(description);
 
         iconImage.setStyleName("fancy-notif-icon");
         iconImage.setVisible(icon != null);
@@ -69,6 +61,85 @@ public class FancyNotification extends CssLayout {
 
     }
 
+    /**
+     * Change title of notification
+     * 
+     * @param title
+     *            New title, null to hide title
+     */
+    public void setTitle(String title) {
+        titleLabel.setVisible(title != null);
+        titleLabel.setValue(title != null ? title : "");
+        if (title != null) {
+            removeStyleName("fancy-notif-notitle");
+        } else {
+            addStyleName("fancy-notif-notitle");
+        }
+    }
+
+    /**
+     * Change description of notification
+     * 
+     * @param description
+     *            New description, null to hide description
+     */
+    public void setDescription(String description) {
+        descLabel.setVisible(description != null);
+        descLabel.setValue(description != null ? description : "");
+        if (description != null) {
+            removeStyleName("fancy-notif-nodesc");
+        } else {
+            addStyleName("fancy-notif-nodesc");
+        }
+    }
+
+    /**
+     * Set priority of notification, see
+     * {@link FancyNotifications#setPreemptivePriority(NotificationPriority)}
+     * 
+     * @param priority
+     *            Priority of notification
+     */
+    public void setPriority(NotificationPriority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * Get priority of notification
+     * 
+     * @return Priority of notification
+     */
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Set number of times this notification has occurred. Count is shown as
+     * badge when it is more than one.
+     * 
+     * @param count
+     *            Number of occurrences
+     */
+    public void setOccurrences(int count) {
+        if (count <= 1) {
+            if (countLabel != null) {
+                countLabel.setVisible(false);
+            }
+            return;
+        }
+
+        if (countLabel == null) {
+            countLabel = new Label();
+            countLabel.setStyleName("fancy-notif-count");
+            addComponent(countLabel);
+        }
+        countLabel.setValue("\u00d7" + count);
+        countLabel.setVisible(true);
+    }
+
     /**
      * Get label presenting the title of notification
      * 
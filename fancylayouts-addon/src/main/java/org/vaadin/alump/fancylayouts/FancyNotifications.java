@@ -18,18 +18,40 @@
 
 package org.vaadin.alump.fancylayouts;
 
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.vaadin.alump.fancylayouts.gwt.client.connect.FancyNotificationsClientRpc;
+import org.vaadin.alump.fancylayouts.gwt.client.connect.FancyNotificationsServerRpc;
 import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyNotificationsState;
 import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyNotificationsState.Position;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.LatencyEvent;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.NotificationItem;
 
 import com.vaadin.event.LayoutEvents;
 import com.vaadin.event.LayoutEvents.LayoutClickEvent;
 import com.vaadin.server.Resource;
+import com.vaadin.shared.Connector;
+import com.vaadin.shared.Registration;
 import com.vaadin.ui.AbstractComponent;
 import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
+import com.vaadin.ui.UI;
 
 /**
  * Easy way to add notification bubbles to your web application.
@@ -41,6 +63,228 @@ public class FancyNotifications extends FancyCssLayout {
     protected boolean closeWhenClicked = false;
     protected Resource defaultIcon = null;
 
+    /**
+     * What to do with notifications over the rate limit
+     */
+    public enum OverflowPolicy {
+        /**
+         * Notifications over the rate limit are dropped
+         */
+        DROP,
+        /**
+         * Notifications over the rate limit wait in queue. When queue is full
+         * the oldest queued notification is dropped.
+         */
+        QUEUE_DROP_OLDEST,
+        /**
+         * Notifications over the rate limit wait in queue. When queue is full
+         * new notifications are dropped.
+         */
+        QUEUE_DROP_NEWEST;
+    }
+
+    public final static int DEFAULT_MAX_QUEUED = 100;
+
+    private TokenBucket rateLimit = null;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.QUEUE_DROP_OLDEST;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private final NotificationQueue queue = new NotificationQueue();
+    private transient ScheduledFuture<?> drainTask = null;
+
+    /**
+     * Notifications shown or waiting to be shown, by their ids
+     */
+    private final Map<Object, NotificationEntry> notificationsById = new HashMap<Object, NotificationEntry>();
+
+    private int maxVisible = 0;
+
+    /**
+     * Generates key used to detect duplicate notifications
+     */
+    public interface DuplicateKeyGenerator extends Serializable {
+        /**
+         * Get key of notification. Notifications with equal keys are
+         * duplicates.
+         * 
+         * @param id
+         *            ID of notification
+         * @param title
+         *            Title text
+         * @param description
+         *            Description text
+         * @return Key, or null if notification should never be collapsed
+         */
+        public Object getKey(Object id, String title, String description);
+    }
+
+    /**
+     * Default key generator, uses id if defined, otherwise title and
+     * description.
+     */
+    public final static DuplicateKeyGenerator DEFAULT_DUPLICATE_KEY = new DuplicateKeyGenerator() {
+        @Override
+        public Object getKey(Object id, String title, String description) {
+            if (id != null) {
+                return id;
+            }
+            if (title == null && description == null) {
+                return null;
+            }
+            return Arrays.asList(title, description);
+        }
+    };
+
+    private int duplicateWindowMs = 0;
+    private DuplicateKeyGenerator duplicateKeyGenerator = DEFAULT_DUPLICATE_KEY;
+
+    /**
+     * Notifications that can be collapsed with, in order of last occurrence
+     */
+    private final LinkedHashMap<Object, NotificationEntry> duplicateIndex = new LinkedHashMap<Object, NotificationEntry>();
+    private final Set<Component> pendingTimerRestarts = new HashSet<Component>();
+    private final NotificationQueue backlog = new NotificationQueue();
+    private int maxBacklog = 0;
+    private NotificationPriority preemptivePriority = NotificationPriority.HIGH;
+
+    private NotificationHistory history = null;
+
+    private boolean lightweight = false;
+    private int nextItemKey = 0;
+
+    /**
+     * Lightweight notifications shown, by their item keys in order shown
+     */
+    private final Map<Integer, NotificationEntry> shownItems = new LinkedHashMap<Integer, NotificationEntry>();
+    private final Set<Integer> pendingItemTimerRestarts = new HashSet<Integer>();
+
+    /**
+     * Lightweight notifications added or changed, and removed, since last
+     * response. Only these are sent to client side.
+     */
+    private final Set<Integer> pendingItemChanges = new LinkedHashSet<Integer>();
+    private final List<Integer> pendingItemRemoves = new ArrayList<Integer>();
+
+    private LatencyTracker latencyTracker = null;
+
+    /**
+     * Notification waiting to be shown at given time
+     */
+    private static class Scheduled implements Serializable {
+        /**
+         * Key in scheduled map: id of notification, or this if id is null
+         */
+        final Object key;
+        final NotificationEntry entry;
+        final long dueTime;
+        transient ScheduledFuture<?> future;
+
+        Scheduled(NotificationEntry entry, long dueTime) {
+            this.key = entry.id != null ? entry.id : this;
+            this.entry = entry;
+            this.dueTime = dueTime;
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+    }
+
+    private final Map<Object, Scheduled> scheduled = new HashMap<Object, Scheduled>();
+
+    private boolean serverClose = false;
+
+    /**
+     * When server closes expired notifications: times when visible
+     * notifications (components, or keys of items) were shown or restarted,
+     * in that order
+     */
+    private final LinkedHashMap<Object, Long> shownTimes = new LinkedHashMap<Object, Long>();
+    private transient ScheduledFuture<?> expiryTask = null;
+    private long expiryTaskTime = Long.MAX_VALUE;
+
+    public final static int DEFAULT_MAX_POSTED = 1000;
+
+    /**
+     * Notification or close request posted from any thread
+     */
+    private static class Posted implements Serializable {
+        final Object id;
+        final String title;
+        final String description;
+        final Resource icon;
+        final String styleName;
+        final NotificationPriority priority;
+
+        Posted(Object id, String title, String description, Resource icon,
+                String styleName, NotificationPriority priority) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.icon = icon;
+            this.styleName = styleName;
+            this.priority = priority;
+        }
+
+        boolean isClose() {
+            return priority == null;
+        }
+    }
+
+    private final AccessQueue<Posted> posted = new AccessQueue<Posted>(
+            DEFAULT_MAX_POSTED) {
+        @Override
+        protected void process(List<Posted> batch) {
+            for (Posted post : batch) {
+                if (post.isClose()) {
+                    closeNotification(post.id);
+                } else {
+                    showNotification(post.id, post.title, post.description,
+                            post.icon, post.styleName, post.priority);
+                }
+            }
+        }
+    };
+
+    /**
+     * Notifications shown since last response, when latencies are tracked
+     */
+    private final List<NotificationEntry> pendingSent = new ArrayList<NotificationEntry>();
+
+    private final FancyNotificationsServerRpc notificationsRpc = new FancyNotificationsServerRpc() {
+        @Override
+        public void itemClicked(int key) {
+            NotificationEntry entry = shownItems.get(key);
+            if (entry == null) {
+                return;
+            }
+            if (entry.id != null) {
+                for (NotificationsListener listener : listeners) {
+                    listener.notificationClicked(entry.id);
+                }
+            }
+            if (closeWhenClicked) {
+                closeItems(Collections.singletonList(key));
+            }
+        }
+
+        @Override
+        public void itemsClosed(List<Integer> keys) {
+            removeItems(keys);
+        }
+
+        @Override
+        public void latencyReport(List<LatencyEvent> events,
+                double serverTime, double clientReceived, double clientSent) {
+            if (latencyTracker != null) {
+                latencyTracker.report(events, serverTime, clientReceived,
+                        clientSent, System.currentTimeMillis());
+            }
+        }
+    };
+
     /**
      * Interface for notification listeners
      */
@@ -55,159 +299,1502 @@ public class FancyNotifications extends FancyCssLayout {
     }
 
     /**
-     * Construct new FancyNotifications
+     * Construct new FancyNotifications
+     */
+    public FancyNotifications() {
+        super.addLayoutClickListener(layoutClickListener);
+        addComponentAttachListener(indexListener);
+        addComponentDetachListener(indexListener);
+        registerRpc(notificationsRpc, FancyNotificationsServerRpc.class);
+        getState().horMarginTransition = false;
+    }
+
+    private class IndexListener implements
+            ComponentContainer.ComponentAttachListener,
+            ComponentContainer.ComponentDetachListener {
+
+        @Override
+        public void componentAttachedToContainer(
+                ComponentContainer.ComponentAttachEvent event) {
+            Component component = event.getAttachedComponent();
+            Object id = getId(component);
+            if (id == null) {
+                return;
+            }
+            NotificationEntry entry = notificationsById.get(id);
+            if (entry == null || entry.peekComponent() != component) {
+                // Added directly to layout, not as notification
+                notificationsById.put(id,
+                        component instanceof FancyNotification
+                                ? new NotificationEntry(
+                                        (FancyNotification) component)
+                                : new NotificationEntry(id, component));
+            }
+        }
+
+        @Override
+        public void componentDetachedFromContainer(
+                ComponentContainer.ComponentDetachEvent event) {
+            Component component = event.getDetachedComponent();
+            Object id = getId(component);
+            NotificationEntry entry = id != null ? notificationsById.get(id)
+                    : null;
+            if (entry != null && entry.peekComponent() == component) {
+                notificationsById.remove(id);
+            }
+            shownTimes.remove(component);
+        }
+    }
+
+    private final IndexListener indexListener = new IndexListener();
+
+    private static Object getId(Component component) {
+        if (component instanceof AbstractComponent) {
+            return ((AbstractComponent) component).getData();
+        }
+        return null;
+    }
+
+    private void indexEntry(NotificationEntry entry) {
+        if (entry.id != null) {
+            notificationsById.put(entry.id, entry);
+        }
+    }
+
+    private void unindexEntry(NotificationEntry entry) {
+        if (entry.id != null && notificationsById.get(entry.id) == entry) {
+            notificationsById.remove(entry.id);
+        }
+    }
+
+    protected LayoutEvents.LayoutClickListener layoutClickListener = new LayoutEvents.LayoutClickListener() {
+
+        @Override
+        public void layoutClick(LayoutClickEvent event) {
+
+            Component component = event.getChildComponent();
+            while (component != null && component != FancyNotifications.this) {
+                if (component instanceof FancyNotification) {
+                    break;
+                }
+                component = component.getParent();
+            }
+
+            if (component != null && component != FancyNotifications.this) {
+                AbstractComponent aComponent = (AbstractComponent) component;
+                Object id = aComponent.getData();
+                if (id != null) {
+                    for (NotificationsListener listener : listeners) {
+                        listener.notificationClicked(id);
+                    }
+                }
+                if (closeWhenClicked) {
+                    fancyRemoveComponent(component);
+                }
+            }
+
+        }
+
+    };
+
+    @Override
+    protected FancyNotificationsState getState() {
+        return (FancyNotificationsState) super.getState();
+    }
+
+    @Override
+    protected FancyNotificationsState getState(boolean markAsDirty) {
+        return (FancyNotificationsState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Get notification component with id. Id of notification is read when it
+     * is added, changing data of notification later is not supported.
+     * 
+     * @param id
+     *            ID of notification
+     * @return Notification component or null if not shown
+     */
+    protected Component getNotification(Object id) {
+        NotificationEntry entry = id != null ? notificationsById.get(id)
+                : null;
+        if (entry == null) {
+            return null;
+        }
+        Component shown = entry.peekComponent();
+        return shown != null && components.contains(shown) ? shown : null;
+    }
+
+    /**
+     * Check if notification with id is shown, or is waiting to be shown. Does
+     * not include notifications being closed.
+     * 
+     * @param id
+     *            ID of notification
+     * @return true if notification is shown or waiting
+     */
+    public boolean containsNotification(Object id) {
+        return findEntry(id) != null;
+    }
+
+    /**
+     * Update texts of notification with id. Works with notifications shown
+     * and waiting to be shown.
+     * 
+     * @param id
+     *            ID of notification
+     * @param title
+     *            New title text
+     * @param description
+     *            New description text
+     * @return true if notification was found and updated
+     */
+    public boolean updateNotification(Object id, String title,
+            String description) {
+        if (title == null && description == null) {
+            throw new IllegalArgumentException(
+                    "You have to define title or description for notification");
+        }
+
+        NotificationEntry entry = findEntry(id);
+        if (entry == null) {
+            return false;
+        }
+        Component shown = entry.peekComponent();
+        if (shown != null && !(shown instanceof FancyNotification)) {
+            // Custom component, texts are not known
+            return false;
+        }
+        // Also updates history record and any copies waiting to be shown
+        entry.update(title, description);
+        if (entry.item != null) {
+            itemChanged(entry.item.key);
+        }
+        return true;
+    }
+
+    /**
+     * Find notification shown (and not closing) or waiting to be shown
+     */
+    private NotificationEntry findEntry(Object id) {
+        NotificationEntry entry = id != null ? notificationsById.get(id)
+                : null;
+        if (entry == null) {
+            return null;
+        }
+        Component shown = entry.peekComponent();
+        if (shown != null && fancyRemoveComponents.contains(shown)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Show notification with text
+     * 
+     * @param title
+     *            Title text
+     */
+    public void showNotification(Object id, String description) {
+        showNotification(id, null, description, null, null);
+    }
+
+    /**
+     * Show notification with title and description texts
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     */
+    public void showNotification(Object id, String title, String description) {
+        showNotification(id, title, description, null, null);
+    }
+
+    /**
+     * Show notification with title and description texts and an icon
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     * @param icon
+     *            Icon used in notification
+     */
+    public void showNotification(Object id, String title, String description,
+            Resource icon) {
+        showNotification(id, title, description, icon, null);
+    }
+
+    /**
+     * Show notification with given options
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     */
+    public void showNotification(Object id, String title, String description,
+            Resource icon, String styleName) {
+        showNotification(id, title, description, icon, styleName,
+                NotificationPriority.NORMAL);
+    }
+
+    /**
+     * Show notification with given options and priority
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     * @param priority
+     *            Priority of notification
+     */
+    public void showNotification(Object id, String title, String description,
+            Resource icon, String styleName, NotificationPriority priority) {
+        submit(createEntry(id, title, description, icon, styleName, priority));
+    }
+
+    private NotificationEntry createEntry(Object id, String title,
+            String description, Resource icon, String styleName,
+            NotificationPriority priority) {
+
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        if (title == null && description == null) {
+            throw new IllegalArgumentException(
+                    "You have to define title or description for notification");
+        }
+
+        if (icon == null) {
+            icon = defaultIcon;
+        }
+
+        NotificationEntry entry = new NotificationEntry(id, title,
+                description, icon, styleName);
+        entry.priority = priority;
+        return entry;
+    }
+
+    /**
+     * Show notification after delay
+     * 
+     * @param delay
+     *            Delay before notification is shown
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     */
+    public void showNotificationAfter(Duration delay, Object id, String title,
+            String description) {
+        showNotificationAfter(delay, id, title, description, null, null,
+                NotificationPriority.NORMAL);
+    }
+
+    /**
+     * Show notification with given options after delay
+     * 
+     * @param delay
+     *            Delay before notification is shown
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     * @param priority
+     *            Priority of notification
+     */
+    public void showNotificationAfter(Duration delay, Object id, String title,
+            String description, Resource icon, String styleName,
+            NotificationPriority priority) {
+        if (delay == null || delay.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Delay has to be defined and not negative");
+        }
+        showNotificationAt(Instant.now().plus(delay), id, title, description,
+                icon, styleName, priority);
+    }
+
+    /**
+     * Show notification at given time
+     * 
+     * @param time
+     *            Time when notification is shown
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     */
+    public void showNotificationAt(Instant time, Object id, String title,
+            String description) {
+        showNotificationAt(time, id, title, description, null, null,
+                NotificationPriority.NORMAL);
+    }
+
+    /**
+     * Show notification with given options at given time. Timers of all
+     * layouts are run by shared scheduler (see {@link FancyScheduler}).
+     * Scheduling notification again with same non null id replaces earlier
+     * one. Scheduled notifications are dropped when this layout is detached,
+     * notifications scheduled before attaching wait for attach.
+     * 
+     * @param time
+     *            Time when notification is shown
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     * @param priority
+     *            Priority of notification
+     */
+    public void showNotificationAt(Instant time, Object id, String title,
+            String description, Resource icon, String styleName,
+            NotificationPriority priority) {
+        if (time == null) {
+            throw new IllegalArgumentException("Time can not be null");
+        }
+
+        Scheduled timed = new Scheduled(createEntry(id, title, description,
+                icon, styleName, priority), time.toEpochMilli());
+        cancelScheduledNotification(id);
+        scheduled.put(timed.key, timed);
+        startTimer(timed);
+    }
+
+    private void startTimer(final Scheduled timed) {
+        UI ui = getUI();
+        if (ui == null) {
+            return;
+        }
+        timed.future = FancyScheduler.scheduleAccess(ui, new Runnable() {
+            @Override
+            public void run() {
+                if (scheduled.get(timed.key) == timed) {
+                    scheduled.remove(timed.key);
+                    submit(timed.entry);
+                }
+            }
+        }, timed.dueTime - System.currentTimeMillis());
+    }
+
+    /**
+     * Cancel notification scheduled to be shown later
+     * 
+     * @param id
+     *            ID of notification
+     * @return true if scheduled notification was cancelled
+     */
+    public boolean cancelScheduledNotification(Object id) {
+        Scheduled timed = id != null ? scheduled.remove(id) : null;
+        if (timed == null) {
+            return false;
+        }
+        timed.cancel();
+        return true;
+    }
+
+    /**
+     * Get number of notifications scheduled to be shown later
+     * 
+     * @return Number of scheduled notifications
+     */
+    public int getScheduledCount() {
+        return scheduled.size();
+    }
+
+    /**
+     * Allows to construct your own notification as you want. Default options
+     * (e.g. icon) will not be applied to notification given to this function.
+     * 
+     * @param notification
+     *            Notification presented.
+     */
+    public void showNotification(FancyNotification notification) {
+        submit(new NotificationEntry(notification));
+    }
+
+    /**
+     * Show notification now, or pass it to rate limiting
+     */
+    private void submit(NotificationEntry entry) {
+        if (latencyTracker != null) {
+            entry.submitted = System.currentTimeMillis();
+        }
+
+        if (collapseDuplicate(entry)) {
+            return;
+        }
+
+        if (history != null) {
+            history.add(entry.createRecord(System.currentTimeMillis()));
+        }
+        indexEntry(entry);
+
+        if (isPreemptive(entry)) {
+            showPreemptive(entry);
+            return;
+        }
+
+        if (rateLimit == null
+                || (queue.isEmpty() && rateLimit.tryAcquire(System
+                        .currentTimeMillis()))) {
+            display(entry);
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP
+                || !makeRoom(queue, maxQueued, entry,
+                        overflowPolicy == OverflowPolicy.QUEUE_DROP_OLDEST)) {
+            unindexEntry(entry);
+            return;
+        }
+
+        queue.add(entry);
+        scheduleDrain();
+    }
+
+    /**
+     * Post notification from any thread. Notification is queued without
+     * waiting for session lock, and all notifications posted meanwhile are
+     * shown in one UI.access. Notifications posted while this layout is not
+     * attached are shown when it is attached.
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     * @return true if posted, false if too many posts are waiting (see
+     *         {@link #setMaxPosted(int)})
+     */
+    public boolean post(Object id, String title, String description) {
+        return post(id, title, description, null, null,
+                NotificationPriority.NORMAL);
+    }
+
+    /**
+     * Post notification with given options from any thread, see
+     * {@link #post(Object, String, String)}
+     * 
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     * @param priority
+     *            Priority of notification
+     * @return true if posted, false if too many posts are waiting
+     */
+    public boolean post(Object id, String title, String description,
+            Resource icon, String styleName, NotificationPriority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        if (title == null && description == null) {
+            throw new IllegalArgumentException(
+                    "You have to define title or description for notification");
+        }
+        return posted.offer(new Posted(id, title, description, icon,
+                styleName, priority));
+    }
+
+    /**
+     * Close notification with ID from any thread. Close is done in the same
+     * UI.access with posted notifications, in order of posting.
+     * 
+     * @param id
+     *            ID of notification
+     * @return true if posted, false if too many posts are waiting
+     */
+    public boolean postClose(Object id) {
+        return posted.offer(new Posted(id, null, null, null, null, null));
+    }
+
+    /**
+     * Subscribe to topic of JVM wide notification hub, see
+     * {@link NotificationHub#get()}. Subscription is removed when this layout
+     * is detached, and it is not restored when session is deserialized.
+     * 
+     * @param topic
+     *            Name of topic
+     * @return Registration to unsubscribe
+     */
+    public Registration subscribe(String topic) {
+        return NotificationHub.get().subscribe(topic, this);
+    }
+
+    /**
+     * Set maximum number of posts waiting to be handled. Posts over the limit
+     * are rejected.
+     * 
+     * @param max
+     *            Maximum number of waiting posts
+     */
+    public void setMaxPosted(int max) {
+        posted.setCapacity(max);
+    }
+
+    /**
+     * Get maximum number of posts waiting to be handled
+     * 
+     * @return Maximum number of waiting posts
+     */
+    public int getMaxPosted() {
+        return posted.getCapacity();
+    }
+
+    /**
+     * Make room for entry in full queue. Lower priority entries are dropped
+     * first.
+     * 
+     * @param max
+     *            Maximum size of queue
+     * @param dropOldest
+     *            true if oldest entry of the same priority can be dropped,
+     *            false if only lower priorities are dropped
+     * @return true if entry can be added
+     */
+    private boolean makeRoom(NotificationQueue entries, int max,
+            NotificationEntry entry, boolean dropOldest) {
+        if (max == 0) {
+            return false;
+        }
+        while (entries.size() >= max) {
+            int order = entry.priority.compareTo(entries.getLowestPriority());
+            if (order < 0 || (order == 0 && !dropOldest)) {
+                return false;
+            }
+            unindexEntry(entries.removeLowest());
+        }
+        return true;
+    }
+
+    private boolean isPreemptive(NotificationEntry entry) {
+        return preemptivePriority != null
+                && entry.priority.compareTo(preemptivePriority) >= 0;
+    }
+
+    /**
+     * Show notification bypassing rate limit and maximum visible. If there
+     * are too many notifications visible, lower priority ones are closed.
+     */
+    private void showPreemptive(NotificationEntry entry) {
+        showEntries(Collections.singletonList(entry));
+
+        while (maxVisible > 0 && getVisibleCount() > maxVisible) {
+            if (!closeLowestVisible(entry.priority)) {
+                break;
+            }
+        }
+    }
+
+    private static NotificationPriority getPriority(Component c) {
+        if (c instanceof FancyNotification) {
+            return ((FancyNotification) c).getPriority();
+        }
+        return NotificationPriority.NORMAL;
+    }
+
+    /**
+     * Close the oldest visible notification of the lowest priority, if its
+     * priority is lower than given.
+     * 
+     * @return true if notification was closed
+     */
+    private boolean closeLowestVisible(NotificationPriority than) {
+        NotificationPriority lowest = than;
+        Component lowestComponent = null;
+        for (Component c : components) {
+            NotificationPriority priority = getPriority(c);
+            if (priority.compareTo(lowest) < 0
+                    && !fancyRemoveComponents.contains(c)) {
+                lowest = priority;
+                lowestComponent = c;
+            }
+        }
+
+        NotificationEntry lowestItem = null;
+        for (NotificationEntry entry : shownItems.values()) {
+            int order = entry.priority.compareTo(lowest);
+            if (order < 0 || (order == 0 && lowestItem != null
+                    && entry.item.key < lowestItem.item.key)) {
+                lowest = entry.priority;
+                lowestItem = entry;
+            }
+        }
+
+        if (lowestItem != null) {
+            closeItems(Collections.singletonList(lowestItem.item.key));
+            return true;
+        } else if (lowestComponent != null) {
+            fancyRemoveComponent(lowestComponent);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set lowest priority of preemptive notifications. Preemptive
+     * notifications are shown immediately, bypassing rate limit and maximum
+     * visible. If there are too many notifications visible, lower priority
+     * notifications are closed to make room.
+     * 
+     * @param priority
+     *            Lowest preemptive priority, null to disable preemption
+     */
+    public void setPreemptivePriority(NotificationPriority priority) {
+        preemptivePriority = priority;
+    }
+
+    /**
+     * Get lowest priority of preemptive notifications
+     * 
+     * @return Lowest preemptive priority, null if preemption is disabled
+     */
+    public NotificationPriority getPreemptivePriority() {
+        return preemptivePriority;
+    }
+
+    /**
+     * Set maximum number of notifications waiting in backlog (see
+     * {@link #setMaxVisible(int)}). When backlog is full, lower priority
+     * notifications are dropped first.
+     * 
+     * @param max
+     *            Maximum number of notifications in backlog, 0 for no limit
+     */
+    public void setMaxBacklog(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        maxBacklog = max;
+        while (max > 0 && backlog.size() > max) {
+            unindexEntry(backlog.removeLowest());
+        }
+    }
+
+    /**
+     * Get maximum number of notifications waiting in backlog
+     * 
+     * @return Maximum number of notifications, 0 if no limit
+     */
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+    /**
+     * Add entry to backlog, dropping lower priority ones if full
+     */
+    private void addToBacklog(NotificationEntry entry) {
+        if (maxBacklog == 0 || makeRoom(backlog, maxBacklog, entry, true)) {
+            backlog.add(entry);
+        } else {
+            unindexEntry(entry);
+        }
+    }
+
+    /**
+     * Collapse notification to earlier notification with same key, if there
+     * is one shown or waiting.
+     * 
+     * @return true if collapsed
+     */
+    private boolean collapseDuplicate(NotificationEntry entry) {
+        if (duplicateWindowMs <= 0) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        entry.lastOccurred = now;
+
+        // Drop expired, index is in order of last occurrence
+        Iterator<NotificationEntry> iter = duplicateIndex.values().iterator();
+        while (iter.hasNext()
+                && iter.next().lastOccurred + duplicateWindowMs < now) {
+            iter.remove();
+        }
+
+        Object key = duplicateKeyGenerator.getKey(entry.id, entry.title,
+                entry.description);
+        if (key == null) {
+            return false;
+        }
+
+        NotificationEntry earlier = duplicateIndex.remove(key);
+        if (earlier == null || !isAlive(earlier)) {
+            duplicateIndex.put(key, entry);
+            return false;
+        }
+
+        earlier.occurred(now);
+        duplicateIndex.put(key, earlier);
+        Component shown = earlier.peekComponent();
+        if (shown != null && components.contains(shown)) {
+            if (serverClose) {
+                trackShown(shown);
+            } else {
+                pendingTimerRestarts.add(shown);
+            }
+            // Occurrence badge has to be updated in client
+            markAsDirty();
+        } else if (earlier.item != null) {
+            if (serverClose) {
+                trackShown(earlier.item.key);
+            } else {
+                pendingItemTimerRestarts.add(earlier.item.key);
+            }
+            itemChanged(earlier.item.key);
+        }
+        return true;
+    }
+
+    /**
+     * Check if notification is shown (and not closing) or waiting to be shown
+     */
+    private boolean isAlive(NotificationEntry entry) {
+        if (entry.item != null) {
+            return shownItems.containsKey(entry.item.key);
+        }
+        Component shown = entry.peekComponent();
+        if (shown != null && components.contains(shown)) {
+            return !fancyRemoveComponents.contains(shown);
+        }
+        return queue.contains(entry) || backlog.contains(entry);
+    }
+
+    /**
+     * Collapse repeated notifications. When notification with same key (see
+     * {@link #setDuplicateKeyGenerator(DuplicateKeyGenerator)}) is shown
+     * again within given time, existing notification gets occurrence badge
+     * and its close timer is restarted, instead of new notification being
+     * added.
+     * 
+     * @param millisecs
+     *            Time window since last occurrence, 0 to disable collapsing
+     */
+    public void setDuplicateWindow(int millisecs) {
+        if (millisecs < 0) {
+            throw new IllegalArgumentException("Negative time not accepted");
+        }
+        duplicateWindowMs = millisecs;
+        if (millisecs == 0) {
+            duplicateIndex.clear();
+        }
+    }
+
+    /**
+     * Get time window used to collapse repeated notifications
+     * 
+     * @return Time window in milliseconds, 0 if disabled
+     */
+    public int getDuplicateWindow() {
+        return duplicateWindowMs;
+    }
+
+    /**
+     * Set generator of keys used to detect duplicate notifications
+     * 
+     * @param generator
+     *            Key generator, null to use default (id, or title and
+     *            description if id is null)
+     */
+    public void setDuplicateKeyGenerator(DuplicateKeyGenerator generator) {
+        duplicateKeyGenerator = generator != null ? generator
+                : DEFAULT_DUPLICATE_KEY;
+        duplicateIndex.clear();
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        if (initial) {
+            // New client side connector, send all
+            pendingItemChanges.clear();
+            pendingItemChanges.addAll(shownItems.keySet());
+            pendingItemRemoves.clear();
+        }
+        if (!pendingItemChanges.isEmpty() || !pendingItemRemoves.isEmpty()) {
+            List<NotificationItem> changedItems = new ArrayList<NotificationItem>(
+                    pendingItemChanges.size());
+            for (Integer key : pendingItemChanges) {
+                changedItems.add(shownItems.get(key).item);
+            }
+            getRpcProxy(FancyNotificationsClientRpc.class).updateItems(
+                    changedItems, new ArrayList<Integer>(pendingItemRemoves));
+            pendingItemChanges.clear();
+            pendingItemRemoves.clear();
+        }
+
+        if (!pendingTimerRestarts.isEmpty()) {
+            List<Connector> restarted = new ArrayList<Connector>();
+            for (Component c : pendingTimerRestarts) {
+                if (components.contains(c)
+                        && !fancyRemoveComponents.contains(c)) {
+                    restarted.add(c);
+                }
+            }
+            pendingTimerRestarts.clear();
+            if (!restarted.isEmpty()) {
+                getRpcProxy(FancyNotificationsClientRpc.class)
+                        .restartCloseTimers(restarted);
+            }
+        }
+
+        if (!pendingItemTimerRestarts.isEmpty()) {
+            List<Integer> restarted = new ArrayList<Integer>();
+            for (Integer key : pendingItemTimerRestarts) {
+                if (shownItems.containsKey(key)) {
+                    restarted.add(key);
+                }
+            }
+            pendingItemTimerRestarts.clear();
+            if (!restarted.isEmpty()) {
+                getRpcProxy(FancyNotificationsClientRpc.class)
+                        .restartItemCloseTimers(restarted);
+            }
+        }
+
+        if (latencyTracker != null && !pendingSent.isEmpty()) {
+            long now = System.currentTimeMillis();
+            for (NotificationEntry entry : pendingSent) {
+                String key = getLatencyKey(entry);
+                if (key != null) {
+                    latencyTracker.sent(key, entry.submitted, now);
+                }
+            }
+            pendingSent.clear();
+            getState().serverTime = now;
+        }
+    }
+
+    /**
+     * Get key used in latency events of notification shown
+     * 
+     * @return Key, or null if notification is not shown anymore
      */
-    public FancyNotifications() {
-        super.addLayoutClickListener(layoutClickListener);
-        getState().horMarginTransition = false;
+    private String getLatencyKey(NotificationEntry entry) {
+        if (entry.item != null) {
+            return shownItems.containsKey(entry.item.key) ? "i"
+                    + entry.item.key : null;
+        }
+        Component shown = entry.peekComponent();
+        if (shown != null && components.contains(shown)) {
+            return shown.getConnectorId();
+        }
+        return null;
     }
 
-    protected LayoutEvents.LayoutClickListener layoutClickListener = new LayoutEvents.LayoutClickListener() {
+    private void display(NotificationEntry entry) {
+        if (getFreeSlots() == 0) {
+            addToBacklog(entry);
+            return;
+        }
+        showEntries(Collections.singletonList(entry));
+    }
 
-        @Override
-        public void layoutClick(LayoutClickEvent event) {
+    /**
+     * Show given notifications as one batch
+     */
+    private void showEntries(List<NotificationEntry> entries) {
+        List<Component> batch = new ArrayList<Component>();
+        for (NotificationEntry entry : entries) {
+            if (lightweight && entry.isLightweight()) {
+                showItem(entry);
+            } else {
+                batch.add(entry.getComponent());
+            }
+        }
+        if (!batch.isEmpty()) {
+            // Always appended, bottom positions are reversed on client side
+            addComponents(batch, getComponentCount());
+            for (Component c : batch) {
+                trackShown(c);
+            }
+        }
+        if (latencyTracker != null) {
+            pendingSent.addAll(entries);
+        }
+    }
 
-            Component component = event.getChildComponent();
-            while (component != null && component != FancyNotifications.this) {
-                if (component instanceof FancyNotification) {
-                    break;
+    private void showItem(NotificationEntry entry) {
+        NotificationItem item = entry.createItem(nextItemKey++);
+        if (entry.icon != null) {
+            item.iconResource = "notif-icon-" + item.key;
+            setResource(item.iconResource, entry.icon);
+        }
+        shownItems.put(item.key, entry);
+        itemChanged(item.key);
+        trackShown(item.key);
+    }
+
+    /**
+     * Send lightweight notification to client side with next response
+     */
+    private void itemChanged(int key) {
+        if (shownItems.containsKey(key)) {
+            pendingItemChanges.add(key);
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Close lightweight notifications by request of server
+     */
+    private void closeItems(Collection<Integer> keys) {
+        if (latencyTracker != null) {
+            long now = System.currentTimeMillis();
+            for (Integer key : keys) {
+                if (shownItems.containsKey(key)) {
+                    latencyTracker.closeRequested("i" + key, now);
                 }
-                component = component.getParent();
             }
+        }
+        removeItems(keys);
+    }
 
-            if (component != null && component != FancyNotifications.this) {
-                AbstractComponent aComponent = (AbstractComponent) component;
-                Object id = aComponent.getData();
-                if (id != null) {
-                    for (NotificationsListener listener : listeners) {
-                        listener.notificationClicked(id);
-                    }
-                }
-                if (closeWhenClicked) {
-                    fancyRemoveComponent(component);
-                }
+    /**
+     * Remove lightweight notifications. Client side fades those out.
+     */
+    private void removeItems(Collection<Integer> keys) {
+        boolean changed = false;
+        for (Integer key : keys) {
+            NotificationEntry entry = shownItems.remove(key);
+            if (entry == null) {
+                continue;
             }
+            changed = true;
+            shownTimes.remove(key);
+            pendingItemChanges.remove(key);
+            pendingItemRemoves.add(key);
+            if (entry.item.iconResource != null) {
+                setResource(entry.item.iconResource, null);
+            }
+            unindexEntry(entry);
+        }
+        if (changed) {
+            markAsDirty();
+            promoteBacklog();
+        }
+    }
+
+    /**
+     * Set history where notifications are recorded. Notifications are
+     * recorded when those are posted, including ones dropped or still waiting
+     * because of limits. Repeated notifications collapsed together are
+     * recorded once.
+     * 
+     * @param history
+     *            History used, null to not record notifications
+     */
+    public void setHistory(NotificationHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Get history where notifications are recorded
+     * 
+     * @return History or null if not recorded
+     */
+    public NotificationHistory getHistory() {
+        return history;
+    }
 
+    /**
+     * Track latencies of notifications through their lifecycle: when those
+     * are posted, sent to client, rendered, faded in, asked to close and
+     * removed. Client side reports its measurements in batches, piggybacked
+     * to other requests. Metrics can be shared by multiple layouts.
+     * 
+     * @param metrics
+     *            Metrics where latencies are recorded, null to disable
+     *            tracking
+     */
+    public void setLatencyMetrics(NotificationMetrics metrics) {
+        if (metrics == null) {
+            latencyTracker = null;
+            pendingSent.clear();
+        } else if (latencyTracker == null
+                || latencyTracker.getMetrics() != metrics) {
+            latencyTracker = new LatencyTracker(metrics);
         }
+        getState().trackLatency = metrics != null;
+    }
 
-    };
+    /**
+     * Get metrics where latencies are recorded
+     * 
+     * @return Metrics or null if latencies are not tracked
+     */
+    public NotificationMetrics getLatencyMetrics() {
+        return latencyTracker != null ? latencyTracker.getMetrics() : null;
+    }
 
-    @Override
-    protected FancyNotificationsState getState() {
-        return (FancyNotificationsState) super.getState();
+    /**
+     * Let server close expired notifications (see
+     * {@link #setCloseTimeout(int)}) instead of client side. Server keeps
+     * track of close times with shared scheduler and removes expired
+     * notifications in bulk, client side only fades those out. Notifications
+     * are closed and their memory released even if client side is asleep or
+     * disconnected.
+     * 
+     * @param enabled
+     *            true to close expired notifications on server side
+     */
+    public void setServerSideClose(boolean enabled) {
+        if (serverClose == enabled) {
+            return;
+        }
+        serverClose = enabled;
+        getState().serverClose = enabled;
+
+        shownTimes.clear();
+        cancelExpiry();
+        if (enabled) {
+            // Timers of visible notifications start from now
+            for (Component c : components) {
+                if (!fancyRemoveComponents.contains(c)) {
+                    trackShown(c);
+                }
+            }
+            for (Integer key : shownItems.keySet()) {
+                trackShown(key);
+            }
+        }
     }
 
-    protected Component getNotification(Object id) {
-        Iterator<Component> iter = this.iterator();
-        while (iter.hasNext()) {
-            Component child = iter.next();
-            if (child instanceof AbstractComponent) {
-                Object data = ((AbstractComponent) child).getData();
-                if (data != null && data.equals(id)) {
-                    return child;
+    /**
+     * Check if server closes expired notifications
+     * 
+     * @return true if expired notifications are closed on server side
+     */
+    public boolean isServerSideClose() {
+        return serverClose;
+    }
+
+    /**
+     * Start or restart close time of visible notification
+     * 
+     * @param key
+     *            Notification component, or key of lightweight notification
+     */
+    private void trackShown(Object key) {
+        if (!serverClose) {
+            return;
+        }
+        shownTimes.remove(key);
+        shownTimes.put(key, System.currentTimeMillis());
+        scheduleExpiry();
+    }
+
+    private void scheduleExpiry() {
+        int timeout = getState(false).closeTimeoutMs;
+        if (!serverClose || timeout == 0 || shownTimes.isEmpty()) {
+            return;
+        }
+        UI ui = getUI();
+        if (ui == null) {
+            return;
+        }
+
+        // Times are in order they were shown, so first one expires first
+        long next = shownTimes.values().iterator().next() + timeout;
+        if (expiryTask != null && expiryTaskTime <= next) {
+            return;
+        }
+
+        cancelExpiry();
+        final AtomicReference<ScheduledFuture<?>> self = new AtomicReference<ScheduledFuture<?>>();
+        expiryTaskTime = next;
+        expiryTask = FancyScheduler.scheduleAccess(ui, new Runnable() {
+            @Override
+            public void run() {
+                if (expiryTask != self.get()) {
+                    // Cancelled, newer task has been scheduled
+                    return;
                 }
+                expiryTask = null;
+                expiryTaskTime = Long.MAX_VALUE;
+                expireNotifications();
             }
+        }, next - System.currentTimeMillis());
+        self.set(expiryTask);
+    }
+
+    private void cancelExpiry() {
+        if (expiryTask != null) {
+            expiryTask.cancel(false);
+            expiryTask = null;
         }
-        return null;
+        expiryTaskTime = Long.MAX_VALUE;
     }
 
     /**
-     * Show notification with text
+     * Remove expired notifications in one go
+     */
+    private void expireNotifications() {
+        long shownBefore = System.currentTimeMillis()
+                - getState(false).closeTimeoutMs;
+        List<Component> expired = new ArrayList<Component>();
+        List<Integer> expiredItems = new ArrayList<Integer>();
+        for (Map.Entry<Object, Long> shown : shownTimes.entrySet()) {
+            if (shown.getValue() > shownBefore) {
+                break;
+            }
+            if (shown.getKey() instanceof Component) {
+                expired.add((Component) shown.getKey());
+            } else {
+                expiredItems.add((Integer) shown.getKey());
+            }
+        }
+
+        if (!expiredItems.isEmpty()) {
+            closeItems(expiredItems);
+        }
+        if (!expired.isEmpty()) {
+            latencyCloseRequested(expired);
+            removeComponents(expired);
+        }
+        scheduleExpiry();
+    }
+
+    /**
+     * Render notifications without child components. Lightweight
+     * notifications are kept in shared state of this layout and rendered
+     * directly by client side, so each notification does not need
+     * components and connectors of its own. Notifications given as
+     * FancyNotification components are still added as components.
      * 
-     * @param title
-     *            Title text
+     * @param lightweight
+     *            true to render new notifications without components
      */
-    public void showNotification(Object id, String description) {
-        showNotification(id, null, description, null, null);
+    public void setLightweight(boolean lightweight) {
+        this.lightweight = lightweight;
     }
 
     /**
-     * Show notification with title and description texts
+     * Check if new notifications are rendered without components
      * 
-     * @param id
-     *            ID of notification, given back in events
-     * @param title
-     *            Title text
-     * @param description
-     *            Description text
+     * @return true if lightweight rendering is used
      */
-    public void showNotification(Object id, String title, String description) {
-        showNotification(id, title, description, null, null);
+    public boolean isLightweight() {
+        return lightweight;
     }
 
     /**
-     * Show notification with title and description texts and an icon
+     * Get number of notifications that can be shown before reaching maximum
+     * visible
+     */
+    private int getFreeSlots() {
+        if (maxVisible <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(0, maxVisible - getVisibleCount());
+    }
+
+    /**
+     * Get number of notifications visible and not being closed
      * 
-     * @param id
-     *            ID of notification, given back in events
-     * @param title
-     *            Title text
-     * @param description
-     *            Description text
-     * @param icon
-     *            Icon used in notification
+     * @return Number of visible notifications
      */
-    public void showNotification(Object id, String title, String description,
-            Resource icon) {
-        showNotification(id, title, description, icon, null);
+    public int getVisibleCount() {
+        return components.size() - fancyRemoveComponents.size()
+                + shownItems.size();
     }
 
     /**
-     * Show notification with given options
+     * Move notifications from backlog to visible stack while there is room
+     */
+    private void promoteBacklog() {
+        int free = getFreeSlots();
+        if (backlog.isEmpty() || free == 0) {
+            return;
+        }
+        List<NotificationEntry> batch = new ArrayList<NotificationEntry>();
+        while (!backlog.isEmpty() && batch.size() < free) {
+            batch.add(backlog.removeFirst());
+        }
+        showEntries(batch);
+    }
+
+    @Override
+    protected void childrenRemoved() {
+        super.childrenRemoved();
+        promoteBacklog();
+    }
+
+    /**
+     * Limit number of notifications shown at once. Notifications beyond the
+     * limit are kept in backlog as data, and shown when earlier notifications
+     * are closed.
      * 
-     * @param id
-     *            ID of notification, given back in events
-     * @param title
-     *            Title text
-     * @param description
-     *            Description text (null if not needed)
-     * @param icon
-     *            Icon (null if not needed)
-     * @param styleName
-     *            Style name for this notification (null if not needed)
+     * @param max
+     *            Maximum number of visible notifications, 0 for no limit
      */
-    public void showNotification(Object id, String title, String description,
-            Resource icon, String styleName) {
+    public void setMaxVisible(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        maxVisible = max;
+        promoteBacklog();
+    }
 
-        if (title == null && description == null) {
-            throw new IllegalArgumentException(
-                    "You have to define title or description for notification");
+    /**
+     * Get maximum number of notifications shown at once
+     * 
+     * @return Maximum number of visible notifications, 0 if no limit
+     */
+    public int getMaxVisible() {
+        return maxVisible;
+    }
+
+    /**
+     * Get number of notifications waiting in backlog for room in visible
+     * stack
+     * 
+     * @return Number of notifications in backlog
+     */
+    public int getBacklogCount() {
+        return backlog.size();
+    }
+
+    /**
+     * Show queued notifications allowed by rate limit. All of those are added
+     * as one batch.
+     */
+    private void drainQueue() {
+        long now = System.currentTimeMillis();
+        int free = getFreeSlots();
+        List<NotificationEntry> batch = new ArrayList<NotificationEntry>();
+        while (!queue.isEmpty()
+                && (rateLimit == null || rateLimit.tryAcquire(now))) {
+            NotificationEntry entry = queue.removeFirst();
+            if (batch.size() < free) {
+                batch.add(entry);
+            } else {
+                addToBacklog(entry);
+            }
         }
+        if (!batch.isEmpty()) {
+            showEntries(batch);
+        }
+        scheduleDrain();
+    }
 
-        if (icon == null) {
-            icon = defaultIcon;
+    private void scheduleDrain() {
+        if (drainTask != null || queue.isEmpty()) {
+            return;
         }
+        UI ui = getUI();
+        if (ui == null) {
+            return;
+        }
+
+        long delay = rateLimit == null ? 0L : rateLimit
+                .millisUntilToken(System.currentTimeMillis());
+        final AtomicReference<ScheduledFuture<?>> self = new AtomicReference<ScheduledFuture<?>>();
+        drainTask = FancyScheduler.scheduleAccess(ui, new Runnable() {
+            @Override
+            public void run() {
+                if (drainTask != self.get()) {
+                    // Cancelled, newer task has been scheduled
+                    return;
+                }
+                drainTask = null;
+                drainQueue();
+            }
+        }, delay);
+        self.set(drainTask);
+    }
 
-        showNotification(new FancyNotification(id, title, description, icon,
-                styleName));
+    private void cancelDrain() {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
     }
 
     /**
-     * Allows to construct your own notification as you want. Default options
-     * (e.g. icon) will not be applied to notification given to this function.
+     * Limit rate of shown notifications with token bucket. Up to burst
+     * notifications can be shown at once, after that new ones are allowed
+     * with given rate. Queued notifications are stored as data, components are
+     * only created when notifications are shown.
      * 
-     * @param notification
-     *            Notification presented.
+     * @param perSecond
+     *            Notifications allowed per second, 0 to disable rate limit
+     * @param burst
+     *            Number of notifications allowed at once
+     * @param policy
+     *            What to do with notifications over the limit
      */
-    public void showNotification(FancyNotification notification) {
-        if (getState().position == Position.TOP_RIGHT
-                || getState().position == Position.TOP_LEFT) {
-            addComponent(notification);
+    public void setRateLimit(double perSecond, int burst, OverflowPolicy policy) {
+        if (perSecond < 0.0 || burst < 0) {
+            throw new IllegalArgumentException("Negative limit not accepted");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy can not be null");
+        }
+
+        overflowPolicy = policy;
+        if (perSecond == 0.0) {
+            rateLimit = null;
         } else {
-            addComponent(notification, 0);
+            rateLimit = new TokenBucket(perSecond, Math.max(1, burst));
+        }
+
+        cancelDrain();
+        scheduleDrain();
+    }
+
+    /**
+     * Set maximum number of notifications waiting in rate limit queue
+     * 
+     * @param max
+     *            Maximum number of queued notifications
+     */
+    public void setMaxQueued(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        maxQueued = max;
+        while (queue.size() > max) {
+            unindexEntry(queue.removeLowest());
+        }
+    }
+
+    /**
+     * Get maximum number of notifications waiting in rate limit queue
+     * 
+     * @return Maximum number of queued notifications
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Get number of notifications waiting in rate limit queue
+     * 
+     * @return Number of queued notifications
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        scheduleDrain();
+        scheduleExpiry();
+        for (Scheduled timed : scheduled.values()) {
+            startTimer(timed);
+        }
+        posted.setUI(getUI());
+    }
+
+    @Override
+    public void detach() {
+        cancelDrain();
+        cancelExpiry();
+        posted.setUI(null);
+        for (Scheduled timed : scheduled.values()) {
+            timed.cancel();
         }
+        scheduled.clear();
+        if (latencyTracker != null) {
+            latencyTracker.clear();
+        }
+        super.detach();
     }
 
     /**
-     * Close notification with ID
+     * Close notification with ID. Notification is also dropped if it is still
+     * waiting to be shown or scheduled to be shown later.
      * 
      * @param id
      *            ID of notification
      */
     public void closeNotification(Object id) {
-        Component notif = getNotification(id);
-        if (notif != null) {
-            fancyRemoveComponent(notif);
+        cancelScheduledNotification(id);
+
+        NotificationEntry entry = id != null ? notificationsById.get(id)
+                : null;
+        if (entry == null) {
+            return;
+        }
+        Component shown = entry.peekComponent();
+        if (entry.item != null) {
+            closeItems(Collections.singletonList(entry.item.key));
+        } else if (shown != null && components.contains(shown)) {
+            fancyRemoveComponent(shown);
+        } else {
+            // Still waiting to be shown
+            unindexEntry(entry);
+            if (!queue.remove(entry)) {
+                backlog.remove(entry);
+            }
+        }
+    }
+
+    @Override
+    public void fancyRemoveComponent(Component c) {
+        latencyCloseRequested(Collections.singletonList(c));
+        super.fancyRemoveComponent(c);
+    }
+
+    @Override
+    public void fancyRemoveComponents(Collection<? extends Component> removed) {
+        latencyCloseRequested(removed);
+        super.fancyRemoveComponents(removed);
+    }
+
+    private void latencyCloseRequested(Collection<? extends Component> closed) {
+        if (latencyTracker == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Component c : closed) {
+            if (components.contains(c) && !fancyRemoveComponents.contains(c)) {
+                latencyTracker.closeRequested(c.getConnectorId(), now);
+            }
         }
     }
 
@@ -233,6 +1820,8 @@ public class FancyNotifications extends FancyCssLayout {
         }
 
         getState().closeTimeoutMs = millisecs;
+        cancelExpiry();
+        scheduleExpiry();
     }
 
     /**
@@ -318,30 +1907,14 @@ public class FancyNotifications extends FancyCssLayout {
     }
 
     /**
-     * Set position where notification cards are stacked.
+     * Set position where notification cards are stacked. Children are always
+     * kept in order they were added, with bottom positions the order is
+     * reversed by client side styling.
      * 
      * @param position
      *            Position of notifications
      */
     public void setPosition(Position position) {
-        if (getState().position != position) {
-            boolean revert = isTopPosition(getState().position) != isTopPosition(position);
-            getState().position = position;
-            if (revert) {
-                revertChildOrder();
-            }
-        }
-    }
-
-    /**
-     * Check if given position is "top position". Used to identify when children
-     * has to be reordered.
-     * 
-     * @param position
-     *            Position checked
-     * @return true if "top position"
-     */
-    private boolean isTopPosition(Position position) {
-        return (position == Position.TOP_LEFT || position == Position.TOP_RIGHT);
+        getState().position = position;
     }
 }
@@ -0,0 +1,211 @@
+/**
+ * FancyScheduler.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vaadin.server.ServiceDestroyEvent;
+import com.vaadin.server.ServiceDestroyListener;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Scheduler shared by server side timers of FancyLayouts. All timers of the
+ * JVM are run by one daemon thread, so components do not need threads of
+ * their own. Scheduled tasks should be short, and components must be accessed
+ * only via {@link #scheduleAccess(UI, Runnable, long)}.
+ * <p>
+ * Longer running background work (e.g. fetching data) is run by small shared
+ * pool of worker threads, see {@link #execute(Runnable)}.
+ * <p>
+ * Threads are stopped when all Vaadin services that used the scheduler are
+ * destroyed (e.g. when application is undeployed), or when
+ * {@link #shutdown()} is called. Service is known when scheduler is used
+ * while handling Vaadin request or UI.access, or via UI given to
+ * {@link #scheduleAccess(UI, Runnable, long)}. If scheduler is only used
+ * from other threads, call {@link #shutdown()} when application is stopped
+ * (e.g. from ServletContextListener), otherwise its threads are left running
+ * after redeploy.
+ */
+public class FancyScheduler {
+
+    private static ScheduledThreadPoolExecutor executor;
+    private static ThreadPoolExecutor workers;
+
+    /**
+     * Services that get scheduler shut down when destroyed
+     */
+    private static final Set<VaadinService> services = new HashSet<VaadinService>();
+
+    private FancyScheduler() {
+    }
+
+    protected static synchronized ScheduledThreadPoolExecutor getExecutor() {
+        addCurrentService();
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "FancyLayouts-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // Cancelled tasks are dropped instead of waiting their turn
+            executor.setRemoveOnCancelPolicy(true);
+        }
+        return executor;
+    }
+
+    protected static synchronized ExecutorService getWorkers() {
+        addCurrentService();
+        if (workers == null) {
+            int threads = Math.max(2, Runtime.getRuntime()
+                    .availableProcessors());
+            final AtomicInteger counter = new AtomicInteger();
+            workers = new ThreadPoolExecutor(threads, threads, 60L,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "FancyLayouts-worker-"
+                                            + counter.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            workers.allowCoreThreadTimeOut(true);
+        }
+        return workers;
+    }
+
+    private static void addCurrentService() {
+        addService(VaadinService.getCurrent());
+    }
+
+    /**
+     * Shut down scheduler when given service is destroyed, unless other
+     * services are still using it. Can be called any number of times, and
+     * from any thread.
+     *
+     * @param service
+     *            Service using scheduler, null is ignored
+     */
+    @SuppressWarnings("serial")
+    static synchronized void addService(VaadinService service) {
+        if (service == null || !services.add(service)) {
+            return;
+        }
+        service.addServiceDestroyListener(new ServiceDestroyListener() {
+            @Override
+            public void serviceDestroy(ServiceDestroyEvent event) {
+                synchronized (FancyScheduler.class) {
+                    services.remove(event.getSource());
+                    if (services.isEmpty()) {
+                        shutdown();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop scheduler and worker threads. Scheduled and queued tasks are
+     * dropped. Threads are created again if scheduler is used after this.
+     */
+    public static synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * Run task in shared worker thread pool. Pool has bounded amount of
+     * threads, extra tasks are queued.
+     *
+     * @param task
+     *            Task run
+     */
+    public static void execute(Runnable task) {
+        getWorkers().execute(task);
+    }
+
+    /**
+     * Schedule task to be run in scheduler thread after delay
+     *
+     * @param task
+     *            Task run
+     * @param delayMs
+     *            Delay in milliseconds
+     * @return Future that can be used to cancel task
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return getExecutor().schedule(task, Math.max(0L, delayMs),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedule command to be run with UI.access after delay. If UI is detached
+     * when delay has passed, command is not run.
+     *
+     * @param ui
+     *            UI accessed
+     * @param command
+     *            Command run while holding session lock
+     * @param delayMs
+     *            Delay in milliseconds
+     * @return Future that can be used to cancel task
+     */
+    public static ScheduledFuture<?> scheduleAccess(final UI ui,
+            final Runnable command, long delayMs) {
+        // Might be called outside of request, e.g. by background thread
+        VaadinSession session = ui.getSession();
+        if (session != null) {
+            addService(session.getService());
+        }
+        return schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ui.access(command);
+                } catch (UIDetachedException e) {
+                    // Nothing to do anymore
+                }
+            }
+        }, delayMs);
+    }
+}
@@ -0,0 +1,459 @@
+/**
+ * FancyWindowedCssLayout.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.vaadin.alump.fancylayouts.gwt.client.connect.FancyWindowedCssLayoutServerRpc;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyWindowedCssLayoutState;
+
+import com.vaadin.ui.AbstractSingleComponentContainer;
+import com.vaadin.ui.Component;
+
+/**
+ * FancyWindowedCssLayout is FancyCssLayout that keeps all its items in server
+ * side model, but only attaches the items visible in client side viewport
+ * (plus overscan) as child components. Rest of the items are not attached, so
+ * those do not have client side connectors or DOM. Window is moved when client
+ * side is scrolled.
+ * <p>
+ * Layout needs to have defined height, and items should have about the same
+ * height (see {@link #setItemHeight(int)}) as space of items outside of window
+ * is reserved based on it.
+ * <p>
+ * addComponent, removeComponent and fancyRemoveComponent work with items.
+ * getComponentCount and iterator only cover items attached at the moment, use
+ * {@link #getItemCount()} and {@link #getItem(int)} to access all items.
+ * <p>
+ * Items not attached at the moment have no parent. If such item is added to
+ * another container, it is dropped from this layout instead of being taken
+ * back when window reaches it.
+ */
+@SuppressWarnings("serial")
+public class FancyWindowedCssLayout extends FancyCssLayout {
+
+    /**
+     * Viewport size used before client has reported its viewport
+     */
+    public final static int DEFAULT_VIEWPORT_COUNT = 20;
+
+    /**
+     * Maximum viewport size accepted from client
+     */
+    public final static int MAX_VIEWPORT_COUNT = 200;
+
+    protected final List<Component> items = new IndexedList<Component>();
+
+    private int viewportFirst = 0;
+    private int viewportCount = DEFAULT_VIEWPORT_COUNT;
+    private boolean windowScrolled = false;
+
+    private int maxItems = 0;
+    private EvictionPolicy itemEvictionPolicy = EvictionPolicy.OLDEST_FIRST;
+    private boolean evictItemsWithFade = true;
+
+    /**
+     * Items in order they were added. Only tracked when maximum amount of
+     * items is defined.
+     */
+    private List<Component> itemAddOrder = null;
+
+    private final FancyWindowedCssLayoutServerRpc windowRpc = new FancyWindowedCssLayoutServerRpc() {
+        @Override
+        public void setViewport(int first, int count) {
+            viewportFirst = Math.min(Math.max(0, first), items.size());
+            viewportCount = Math.min(Math.max(1, count), MAX_VIEWPORT_COUNT);
+            updateWindow(true);
+        }
+    };
+
+    public FancyWindowedCssLayout() {
+        super();
+        registerRpc(windowRpc, FancyWindowedCssLayoutServerRpc.class);
+    }
+
+    @Override
+    protected FancyWindowedCssLayoutState getState() {
+        return (FancyWindowedCssLayoutState) super.getState();
+    }
+
+    @Override
+    protected FancyWindowedCssLayoutState getState(boolean markAsDirty) {
+        return (FancyWindowedCssLayoutState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Set expected height of single item. Used to reserve space for items
+     * outside of rendered window.
+     *
+     * @param px
+     *            Height in pixels
+     */
+    public void setItemHeight(int px) {
+        if (px <= 0) {
+            throw new IllegalArgumentException("Height has to be positive");
+        }
+        getState().itemHeight = px;
+    }
+
+    /**
+     * Get expected height of single item
+     *
+     * @return Height in pixels
+     */
+    public int getItemHeight() {
+        return getState(false).itemHeight;
+    }
+
+    /**
+     * Set number of extra items rendered before and after viewport
+     *
+     * @param items
+     *            Number of items
+     */
+    public void setOverscan(int items) {
+        if (items < 0) {
+            throw new IllegalArgumentException("Negative overscan");
+        }
+        getState().overscan = items;
+        updateWindow(false);
+    }
+
+    /**
+     * Get number of extra items rendered before and after viewport
+     *
+     * @return Number of items
+     */
+    public int getOverscan() {
+        return getState(false).overscan;
+    }
+
+    /**
+     * Get number of all items in layout
+     *
+     * @return Number of items
+     */
+    public int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * Get item with index
+     *
+     * @param index
+     *            Index of item
+     * @return Item component
+     */
+    public Component getItem(int index) {
+        return items.get(index);
+    }
+
+    /**
+     * Get index of item
+     *
+     * @param c
+     *            Item component
+     * @return Index of item or -1 if not item of this layout
+     */
+    public int getItemIndex(Component c) {
+        return items.indexOf(c);
+    }
+
+    /**
+     * Limit number of items in layout. With windowed layout limit applies to
+     * all items, not only to ones rendered. Evicted items that are rendered
+     * are faded out if fade is requested, rest are just dropped.
+     */
+    @Override
+    public void setMaxComponents(int max, EvictionPolicy policy, boolean fade) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative maximum not accepted");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Policy can not be null");
+        }
+
+        maxItems = max;
+        itemEvictionPolicy = policy;
+        evictItemsWithFade = fade;
+
+        if (max == 0) {
+            itemAddOrder = null;
+        } else {
+            if (itemAddOrder == null) {
+                // Order of additions is unknown, use order of items
+                itemAddOrder = new IndexedList<Component>();
+                itemAddOrder.addAll(items);
+            }
+            if (evictItems(Collections.<Component> emptyList())) {
+                updateWindow(false);
+            }
+        }
+    }
+
+    @Override
+    public int getMaxComponents() {
+        return maxItems;
+    }
+
+    @Override
+    public EvictionPolicy getEvictionPolicy() {
+        return itemEvictionPolicy;
+    }
+
+    private void untrackItem(Component c) {
+        if (itemAddOrder != null) {
+            itemAddOrder.remove(c);
+        }
+    }
+
+    /**
+     * Drop items over the maximum amount. Items just added are only evicted
+     * if there is not enough other items to evict. Does not update window.
+     *
+     * @param added
+     *            Items just added
+     * @return true if items were evicted
+     */
+    private boolean evictItems(List<Component> added) {
+        if (itemAddOrder == null) {
+            return false;
+        }
+        int excess = items.size() - maxItems;
+        if (excess <= 0) {
+            return false;
+        }
+
+        Set<Component> justAdded = new HashSet<Component>(added);
+        List<Component> evicted = new ArrayList<Component>(excess);
+        int size = itemAddOrder.size();
+        for (int pass = 0; pass < 2 && evicted.size() < excess; ++pass) {
+            boolean takeAdded = pass == 1;
+            for (int i = 0; i < size && evicted.size() < excess; ++i) {
+                int index = itemEvictionPolicy == EvictionPolicy.OLDEST_FIRST ? i
+                        : size - 1 - i;
+                Component c = itemAddOrder.get(index);
+                if (justAdded.contains(c) == takeAdded) {
+                    evicted.add(c);
+                }
+            }
+        }
+
+        List<Component> rendered = new ArrayList<Component>();
+        for (Component c : evicted) {
+            items.remove(c);
+            itemAddOrder.remove(c);
+            if (components.contains(c)) {
+                rendered.add(c);
+            }
+        }
+        if (evictItemsWithFade) {
+            super.fancyRemoveComponents(rendered);
+        }
+        return true;
+    }
+
+    @Override
+    public void addComponent(Component c) {
+        addComponent(c, items.size());
+    }
+
+    @Override
+    public void addComponent(Component c, int index) {
+        addComponents(Collections.singletonList(c), index);
+    }
+
+    @Override
+    public void addComponents(Collection<? extends Component> newComponents,
+            int index) {
+        if (index < 0 || index > items.size()) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+
+        validateNewComponents(newComponents);
+
+        for (Component c : newComponents) {
+            if (c.getParent() != null && c.getParent() != this) {
+                AbstractSingleComponentContainer.removeFromParent(c);
+            }
+            int currentIndex = items.indexOf(c);
+            if (currentIndex >= 0) {
+                if (currentIndex < index) {
+                    --index;
+                }
+                items.remove(c);
+            }
+        }
+
+        List<Component> added = new ArrayList<Component>(newComponents.size());
+        for (Component c : newComponents) {
+            if (!items.contains(c)) {
+                items.add(index, c);
+                ++index;
+                added.add(c);
+                if (itemAddOrder != null) {
+                    itemAddOrder.add(c);
+                }
+            }
+        }
+
+        evictItems(added);
+        updateWindow(false);
+    }
+
+    @Override
+    public void removeComponent(Component c) {
+        boolean removed = items.remove(c);
+        untrackItem(c);
+        if (components.contains(c)) {
+            super.removeComponent(c);
+        }
+        if (removed) {
+            updateWindow(false);
+        }
+    }
+
+    @Override
+    public void removeComponents(Collection<? extends Component> removed,
+            boolean fancy) {
+        if (fancy) {
+            fancyRemoveComponents(removed);
+            return;
+        }
+
+        for (Component c : removed) {
+            items.remove(c);
+            untrackItem(c);
+        }
+        updateWindow(false);
+    }
+
+    @Override
+    public void removeAllComponents() {
+        items.clear();
+        if (itemAddOrder != null) {
+            itemAddOrder.clear();
+        }
+        updateWindow(false);
+    }
+
+    @Override
+    public void fancyRemoveComponent(Component c) {
+        fancyRemoveComponents(Collections.singletonList(c));
+    }
+
+    @Override
+    public void fancyRemoveComponents(Collection<? extends Component> removed) {
+        List<Component> rendered = new ArrayList<Component>();
+        for (Component c : removed) {
+            untrackItem(c);
+            if (items.remove(c) && components.contains(c)) {
+                rendered.add(c);
+            }
+        }
+        // Only rendered ones are faded out, rest are just dropped
+        super.fancyRemoveComponents(rendered);
+        updateWindow(false);
+    }
+
+    @Override
+    public void setComponents(List<? extends Component> newComponents,
+            boolean fancyRemove) {
+        validateNewComponents(newComponents);
+        List<Component> removed = new ArrayList<Component>(items);
+        removed.removeAll(new HashSet<Component>(newComponents));
+        if (fancyRemove) {
+            fancyRemoveComponents(removed);
+        }
+        items.clear();
+        if (itemAddOrder != null) {
+            itemAddOrder.clear();
+        }
+        addComponents(newComponents, 0);
+    }
+
+    /**
+     * Update rendered window to match items and viewport
+     *
+     * @param scrolled
+     *            true if update is caused by scrolling
+     */
+    protected void updateWindow(boolean scrolled) {
+        int overscan = getState(false).overscan;
+        int total;
+        int start;
+        int end;
+        List<Component> window = new ArrayList<Component>();
+        List<Component> taken = new ArrayList<Component>();
+        do {
+            total = items.size();
+            int first = Math.min(viewportFirst,
+                    Math.max(0, total - viewportCount));
+            start = Math.max(0, first - overscan);
+            end = Math.min(total, first + viewportCount + overscan);
+
+            window.clear();
+            taken.clear();
+            for (int i = start; i < end; ++i) {
+                Component c = items.get(i);
+                if (c.getParent() != null && c.getParent() != this) {
+                    // Added to other container while not attached here
+                    taken.add(c);
+                } else {
+                    window.add(c);
+                }
+            }
+            for (Component c : taken) {
+                items.remove(c);
+                untrackItem(c);
+            }
+        } while (!taken.isEmpty());
+
+        FancyWindowedCssLayoutState state = getState();
+        if (scrolled) {
+            windowScrolled = true;
+            for (Component c : window) {
+                if (!components.contains(c)) {
+                    state.scrolledIn.add(c);
+                }
+            }
+        }
+        state.totalCount = total;
+        state.windowStart = start;
+        state.windowEnd = end;
+
+        super.setComponents(window, false);
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        // Items scrolled in are only reported in one response
+        if (!windowScrolled && !getState(false).scrolledIn.isEmpty()) {
+            getState().scrolledIn.clear();
+        }
+        windowScrolled = false;
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * IndexedList.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordered list of unique elements used to store children of layouts. Backed by
+ * an implicit treap (order-statistic tree) and an element to node map, so
+ * contains is O(1) and indexOf, get, add at index and remove are O(log n).
+ * Elements can be only once in the list.
+ *
+ * @param <E>
+ *            Type of elements
+ */
+@SuppressWarnings("serial")
+class IndexedList<E> extends AbstractList<E> implements Serializable {
+
+    private static class Node<E> implements Serializable {
+        E value;
+        final int priority;
+        int size = 1;
+        Node<E> left;
+        Node<E> right;
+        Node<E> parent;
+
+        Node(E value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private Node<E> root;
+    private final Map<E, Node<E>> nodes = new HashMap<E, Node<E>>();
+    private int seed = 0x2545F491;
+
+    private int nextPriority() {
+        // xorshift, good enough to keep treap balanced
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <E> Node<E> update(Node<E> node) {
+        if (node != null) {
+            node.size = 1 + size(node.left) + size(node.right);
+            if (node.left != null) {
+                node.left.parent = node;
+            }
+            if (node.right != null) {
+                node.right.parent = node;
+            }
+        }
+        return node;
+    }
+
+    private static <E> Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            return update(a);
+        } else {
+            b.left = merge(a, b.left);
+            return update(b);
+        }
+    }
+
+    /**
+     * Splits tree so that first count elements end up to result[0] and rest
+     * to result[1].
+     */
+    private static <E> void split(Node<E> node, int count, Node<E>[] result) {
+        if (node == null) {
+            result[0] = null;
+            result[1] = null;
+            return;
+        }
+        if (size(node.left) < count) {
+            split(node.right, count - size(node.left) - 1, result);
+            node.right = result[0];
+            result[0] = update(node);
+        } else {
+            split(node.left, count, result);
+            node.left = result[1];
+            result[1] = update(node);
+        }
+    }
+
+    private void setRoot(Node<E> node) {
+        root = node;
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    private Node<E> nodeAt(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+        }
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static int indexOfNode(Node<?> node) {
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                index += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    private static <E> Node<E> successor(Node<E> node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) {
+                node = node.left;
+            }
+            return node;
+        }
+        while (node.parent != null && node == node.parent.right) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    private Node<E> first() {
+        Node<E> node = root;
+        while (node != null && node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private void unlink(Node<E> node) {
+        Node<E> parent = node.parent;
+        Node<E> replacement = merge(node.left, node.right);
+        if (parent == null) {
+            setRoot(replacement);
+        } else {
+            if (parent.left == node) {
+                parent.left = replacement;
+            } else {
+                parent.right = replacement;
+            }
+            while (parent != null) {
+                update(parent);
+                parent = parent.parent;
+            }
+        }
+        node.left = node.right = node.parent = null;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        return nodeAt(index).value;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node<E> node = nodes.get(o);
+        return node == null ? -1 : indexOfNode(node);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    /**
+     * Insert element to given index.
+     *
+     * @throws IllegalArgumentException
+     *             if element is already in the list
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+        }
+        if (nodes.containsKey(element)) {
+            throw new IllegalArgumentException("Element already in list");
+        }
+        Node<E> node = new Node<E>(element, nextPriority());
+        nodes.put(element, node);
+        if (index == size()) {
+            setRoot(merge(root, node));
+        } else {
+            Node<E>[] parts = new Node[2];
+            split(root, index, parts);
+            setRoot(merge(merge(parts[0], node), parts[1]));
+        }
+        ++modCount;
+    }
+
+    /**
+     * Replace element in given index. If element is already in the list, the
+     * two elements swap places, so elements stay unique.
+     */
+    @Override
+    public E set(int index, E element) {
+        Node<E> node = nodeAt(index);
+        E old = node.value;
+        if (old == element) {
+            return old;
+        }
+        Node<E> other = nodes.get(element);
+        if (other != null) {
+            other.value = old;
+            nodes.put(old, other);
+        } else {
+            nodes.remove(old);
+        }
+        node.value = element;
+        nodes.put(element, node);
+        return old;
+    }
+
+    @Override
+    public E remove(int index) {
+        Node<E> node = nodeAt(index);
+        E value = node.value;
+        nodes.remove(value);
+        unlink(node);
+        ++modCount;
+        return value;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Node<E> node = nodes.remove(o);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        ++modCount;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        ++modCount;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private Node<E> next = first();
+            private Node<E> lastReturned;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public E next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = next;
+                next = successor(next);
+                return lastReturned.value;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                IndexedList.this.remove(lastReturned.value);
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+}
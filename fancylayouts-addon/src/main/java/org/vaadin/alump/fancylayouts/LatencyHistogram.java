@@ -0,0 +1,177 @@
+/**
+ * LatencyHistogram.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+
+/**
+ * Histogram of latencies in milliseconds, in the style of HdrHistogram.
+ * Values are counted in log-linear buckets with about two significant digits
+ * of precision, so memory use is small and constant however many values are
+ * recorded. Values above {@link #MAX_VALUE} are counted as MAX_VALUE.
+ * <p>
+ * Methods are thread safe.
+ */
+@SuppressWarnings("serial")
+public class LatencyHistogram implements Serializable {
+
+    /**
+     * Largest value tracked (one hour)
+     */
+    public final static long MAX_VALUE = 60L * 60L * 1000L;
+
+    private final static int SUB_BUCKET_BITS = 7;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[indexOf(MAX_VALUE) + 1];
+    private long totalCount = 0;
+    private long totalSum = 0;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = 0;
+
+    /**
+     * Resolve bucket of value. Values below SUB_BUCKETS have buckets of their
+     * own, after that each power of two is split to HALF_SUB_BUCKETS
+     * buckets.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value)
+                - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >> exponent);
+        return SUB_BUCKETS + (exponent - 1) * HALF_SUB_BUCKETS
+                + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Get highest value counted to bucket
+     */
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS
+                + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << exponent) - 1;
+    }
+
+    /**
+     * Record value
+     * 
+     * @param millis
+     *            Latency in milliseconds, negative values are counted as 0
+     */
+    public synchronized void record(long millis) {
+        long value = Math.min(MAX_VALUE, Math.max(0L, millis));
+        ++counts[indexOf(value)];
+        ++totalCount;
+        totalSum += value;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Get number of recorded values
+     * 
+     * @return Number of values
+     */
+    public synchronized long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Get smallest recorded value
+     * 
+     * @return Smallest value, 0 if nothing recorded
+     */
+    public synchronized long getMin() {
+        return totalCount == 0 ? 0L : minValue;
+    }
+
+    /**
+     * Get largest recorded value
+     * 
+     * @return Largest value, 0 if nothing recorded
+     */
+    public synchronized long getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Get mean of recorded values
+     * 
+     * @return Mean value, 0 if nothing recorded
+     */
+    public synchronized double getMean() {
+        return totalCount == 0 ? 0.0 : (double) totalSum / totalCount;
+    }
+
+    /**
+     * Get value at given percentile. Returned value is the highest value
+     * equivalent (within precision of histogram) to the value at percentile.
+     * 
+     * @param percentile
+     *            Percentile between 0.0 and 100.0
+     * @return Value at percentile, 0 if nothing recorded
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Invalid percentile "
+                    + percentile);
+        }
+        if (totalCount == 0) {
+            return 0L;
+        }
+
+        long target = Math.max(1L,
+                (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(maxValue, highestValueOf(i));
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Remove all recorded values
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = 0L;
+        }
+        totalCount = 0;
+        totalSum = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "count=" + totalCount + " min=" + getMin() + " p50="
+                + getValueAtPercentile(50.0) + " p99="
+                + getValueAtPercentile(99.0) + " max=" + maxValue;
+    }
+}
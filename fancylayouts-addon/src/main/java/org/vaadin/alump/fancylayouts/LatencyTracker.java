@@ -0,0 +1,186 @@
+/**
+ * LatencyTracker.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.vaadin.alump.fancylayouts.NotificationMetrics.Interval;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.LatencyEvent;
+
+/**
+ * Follows lifecycle of notifications sent to one client and records
+ * latencies to metrics. Client side times are converted to server clock with
+ * offset estimated NTP style: smallest observed server to client and client
+ * to server differences are assumed to have equal network delays.
+ */
+@SuppressWarnings("serial")
+class LatencyTracker implements Serializable {
+
+    /**
+     * Maximum number of notifications followed at once, oldest are dropped
+     * if client never reports those removed
+     */
+    final static int MAX_TRACKED = 1000;
+
+    private static class Timeline implements Serializable {
+        final long submitted;
+        final long sent;
+        double rendered = -1.0;
+        boolean shown = false;
+        long closeRequested = -1L;
+        double clientCloseRequested = -1.0;
+
+        Timeline(long submitted, long sent) {
+            this.submitted = submitted;
+            this.sent = sent;
+        }
+    }
+
+    private final NotificationMetrics metrics;
+
+    private final Map<String, Timeline> timelines = new LinkedHashMap<String, Timeline>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Timeline> eldest) {
+            return size() > MAX_TRACKED;
+        }
+    };
+
+    private double minDownDelta = Double.POSITIVE_INFINITY;
+    private double minUpDelta = Double.POSITIVE_INFINITY;
+
+    LatencyTracker(NotificationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    NotificationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Notification was sent to client
+     */
+    void sent(String key, long submitted, long now) {
+        timelines.put(key, new Timeline(submitted, now));
+        metrics.record(Interval.QUEUED, now - submitted);
+    }
+
+    /**
+     * Server asked notification to be closed
+     */
+    void closeRequested(String key, long now) {
+        Timeline timeline = timelines.get(key);
+        if (timeline != null && timeline.closeRequested < 0L
+                && timeline.clientCloseRequested < 0.0) {
+            timeline.closeRequested = now;
+        }
+    }
+
+    /**
+     * Handle report from client side
+     * 
+     * @param events
+     *            Events measured on client side
+     * @param serverTime
+     *            Server time of last response handled by client, 0 if not
+     *            known
+     * @param clientReceived
+     *            Client time when that response was handled
+     * @param clientSent
+     *            Client time when report was sent
+     * @param now
+     *            Server time now
+     */
+    void report(List<LatencyEvent> events, double serverTime,
+            double clientReceived, double clientSent, long now) {
+        if (serverTime > 0.0) {
+            minDownDelta = Math.min(minDownDelta, clientReceived - serverTime);
+        }
+        minUpDelta = Math.min(minUpDelta, now - clientSent);
+
+        for (LatencyEvent event : events) {
+            Timeline timeline = timelines.get(event.key);
+            if (timeline != null) {
+                handle(event, timeline);
+            }
+        }
+    }
+
+    private void handle(LatencyEvent event, Timeline timeline) {
+        switch (event.stage) {
+        case LatencyEvent.RENDERED:
+            if (timeline.rendered < 0.0) {
+                timeline.rendered = event.time;
+                metrics.record(Interval.DELIVERED, toServerTime(event.time)
+                        - timeline.sent);
+            }
+            break;
+        case LatencyEvent.SHOWN:
+            if (!timeline.shown && timeline.rendered >= 0.0) {
+                timeline.shown = true;
+                metrics.record(Interval.FADE_IN,
+                        (long) (event.time - timeline.rendered));
+                metrics.record(Interval.VISIBLE, toServerTime(event.time)
+                        - timeline.submitted);
+            }
+            break;
+        case LatencyEvent.CLOSE_REQUESTED:
+            if (timeline.closeRequested < 0L
+                    && timeline.clientCloseRequested < 0.0) {
+                timeline.clientCloseRequested = event.time;
+            }
+            break;
+        case LatencyEvent.REMOVED:
+            timelines.remove(event.key);
+            if (timeline.clientCloseRequested >= 0.0) {
+                metrics.record(Interval.CLOSE,
+                        (long) (event.time - timeline.clientCloseRequested));
+            } else if (timeline.closeRequested >= 0L) {
+                metrics.record(Interval.CLOSE, toServerTime(event.time)
+                        - timeline.closeRequested);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Convert client time to server clock
+     */
+    private long toServerTime(double clientTime) {
+        double offset = 0.0;
+        if (minDownDelta != Double.POSITIVE_INFINITY
+                && minUpDelta != Double.POSITIVE_INFINITY) {
+            offset = (minDownDelta - minUpDelta) / 2.0;
+        }
+        return (long) (clientTime - offset);
+    }
+
+    /**
+     * Forget notifications followed, used when client side is lost
+     */
+    void clear() {
+        timelines.clear();
+        minDownDelta = Double.POSITIVE_INFINITY;
+        minUpDelta = Double.POSITIVE_INFINITY;
+    }
+}
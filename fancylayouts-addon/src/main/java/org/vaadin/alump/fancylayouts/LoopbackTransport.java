@@ -0,0 +1,84 @@
+/**
+ * LoopbackTransport.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process NotificationTransport, for testing multiple nodes inside one
+ * JVM without a message broker. Each node has a hub of its own (see
+ * {@link NotificationHub#NotificationHub(java.util.concurrent.Executor, int)}
+ * ) with a transport connected to the same network. Batches are delivered
+ * synchronously to all other nodes of the network.
+ */
+public class LoopbackTransport implements NotificationTransport {
+
+    /**
+     * Connects loopback transports together
+     */
+    public static class Network {
+        private final List<LoopbackTransport> nodes = new CopyOnWriteArrayList<LoopbackTransport>();
+    }
+
+    private final Network network;
+    private volatile Receiver receiver = null;
+
+    /**
+     * Create transport connected to network
+     * 
+     * @param network
+     *            Network of nodes
+     */
+    public LoopbackTransport(Network network) {
+        if (network == null) {
+            throw new IllegalArgumentException("Network can not be null");
+        }
+        this.network = network;
+        network.nodes.add(this);
+    }
+
+    @Override
+    public void send(NotificationBatch batch) {
+        for (LoopbackTransport node : network.nodes) {
+            if (node != this) {
+                node.deliver(batch);
+            }
+        }
+    }
+
+    private void deliver(NotificationBatch batch) {
+        Receiver current = receiver;
+        if (current != null) {
+            current.receive(batch);
+        }
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Disconnect from network
+     */
+    public void close() {
+        network.nodes.remove(this);
+    }
+}
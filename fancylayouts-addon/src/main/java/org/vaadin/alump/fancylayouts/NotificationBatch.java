@@ -0,0 +1,141 @@
+/**
+ * NotificationBatch.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vaadin.server.Resource;
+
+/**
+ * Notifications published on one node, sent to other nodes as one message
+ * by {@link NotificationTransport}. Batches of each source are numbered in
+ * order, so receivers can drop batches delivered more than once.
+ */
+@SuppressWarnings("serial")
+public class NotificationBatch implements Serializable {
+
+    /**
+     * Notification published to topic
+     */
+    public static class Entry implements Serializable {
+        private final String topic;
+        private final Object id;
+        private final String title;
+        private final String description;
+        private final Resource icon;
+        private final String styleName;
+        private final NotificationPriority priority;
+
+        public Entry(String topic, Object id, String title,
+                String description, Resource icon, String styleName,
+                NotificationPriority priority) {
+            this.topic = topic;
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.icon = icon;
+            this.styleName = styleName;
+            this.priority = priority;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Resource getIcon() {
+            return icon;
+        }
+
+        public String getStyleName() {
+            return styleName;
+        }
+
+        public NotificationPriority getPriority() {
+            return priority;
+        }
+    }
+
+    private final String source;
+    private final long sequence;
+    private final List<Entry> entries;
+
+    /**
+     * Create batch
+     * 
+     * @param source
+     *            Unique id of sending hub
+     * @param sequence
+     *            Sequence number of batch, increased by one for each batch
+     *            of source
+     * @param entries
+     *            Notifications in order of publishing
+     */
+    public NotificationBatch(String source, long sequence, List<Entry> entries) {
+        if (source == null || entries == null) {
+            throw new IllegalArgumentException(
+                    "Source and entries have to be defined");
+        }
+        this.source = source;
+        this.sequence = sequence;
+        this.entries = Collections.unmodifiableList(new ArrayList<Entry>(
+                entries));
+    }
+
+    /**
+     * Get unique id of sending hub
+     * 
+     * @return Source id
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Get sequence number of batch
+     * 
+     * @return Sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get notifications of batch
+     * 
+     * @return Unmodifiable list of notifications
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+}
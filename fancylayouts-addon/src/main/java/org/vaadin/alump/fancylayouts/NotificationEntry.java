@@ -0,0 +1,197 @@
+/**
+ * NotificationEntry.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+
+import org.vaadin.alump.fancylayouts.gwt.client.shared.NotificationItem;
+
+import com.vaadin.server.Resource;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+
+/**
+ * Data of notification that is not (yet) presented with component. Component
+ * is only created when notification is shown.
+ */
+@SuppressWarnings("serial")
+class NotificationEntry implements Serializable {
+
+    final Object id;
+    String title;
+    String description;
+    final Resource icon;
+    final String styleName;
+    private Component component;
+
+    /**
+     * State item when shown as lightweight notification
+     */
+    NotificationItem item;
+
+    /**
+     * Record of notification in history, if history is used
+     */
+    NotificationHistory.Record record;
+    int occurrences = 1;
+    NotificationPriority priority = NotificationPriority.NORMAL;
+    long lastOccurred;
+
+    /**
+     * Time when notification was posted, only set when latencies are tracked
+     */
+    long submitted;
+
+    NotificationEntry(Object id, String title, String description,
+            Resource icon, String styleName) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.icon = icon;
+        this.styleName = styleName;
+    }
+
+    NotificationEntry(FancyNotification component) {
+        this(component.getData(), labelText(component.getTitleLabel()),
+                labelText(component.getDescriptionLabel()), component
+                        .getIconImage().getSource(), null);
+        this.component = component;
+        this.priority = component.getPriority();
+    }
+
+    /**
+     * Entry of custom component added as notification
+     */
+    NotificationEntry(Object id, Component component) {
+        this(id, null, null, null, null);
+        this.component = component;
+    }
+
+    private static String labelText(Label label) {
+        return label.isVisible() ? label.getValue() : null;
+    }
+
+    /**
+     * Update texts of notification
+     *
+     * @param title
+     *            New title
+     * @param description
+     *            New description
+     */
+    void update(String title, String description) {
+        this.title = title;
+        this.description = description;
+        if (item != null) {
+            item.title = title;
+            item.description = description;
+        }
+        if (record != null) {
+            record.update(title, description);
+        }
+        if (component instanceof FancyNotification) {
+            ((FancyNotification) component).setTitle(title);
+            ((FancyNotification) component).setDescription(description);
+        }
+    }
+
+    /**
+     * Count another occurrence of notification
+     *
+     * @param now
+     *            Current time in milliseconds
+     */
+    void occurred(long now) {
+        ++occurrences;
+        lastOccurred = now;
+        if (item != null) {
+            item.occurrences = occurrences;
+        }
+        if (record != null) {
+            record.setOccurrences(occurrences);
+        }
+        if (component instanceof FancyNotification) {
+            ((FancyNotification) component).setOccurrences(occurrences);
+        }
+    }
+
+    /**
+     * Create history record of notification
+     *
+     * @param now
+     *            Current time in milliseconds
+     * @return History record
+     */
+    NotificationHistory.Record createRecord(long now) {
+        record = new NotificationHistory.Record(id, title, description, icon,
+                styleName, occurrences, now);
+        return record;
+    }
+
+    /**
+     * Check if notification can be shown without component
+     *
+     * @return true if notification is plain data
+     */
+    boolean isLightweight() {
+        return component == null;
+    }
+
+    /**
+     * Create state item presenting notification
+     *
+     * @param key
+     *            Key of item
+     * @return State item
+     */
+    NotificationItem createItem(int key) {
+        item = new NotificationItem();
+        item.key = key;
+        item.title = title;
+        item.description = description;
+        item.styleName = styleName;
+        item.occurrences = occurrences;
+        return item;
+    }
+
+    /**
+     * Get component if it has been created
+     *
+     * @return Notification component or null
+     */
+    Component peekComponent() {
+        return component;
+    }
+
+    /**
+     * Get component presenting notification, created when first asked
+     *
+     * @return Notification component
+     */
+    Component getComponent() {
+        if (component == null) {
+            FancyNotification created = new FancyNotification(id, title,
+                    description, icon, styleName);
+            created.setOccurrences(occurrences);
+            created.setPriority(priority);
+            component = created;
+        }
+        return component;
+    }
+}
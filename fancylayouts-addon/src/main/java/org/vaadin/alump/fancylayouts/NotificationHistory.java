@@ -0,0 +1,318 @@
+/**
+ * NotificationHistory.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.server.Resource;
+import com.vaadin.server.VaadinSession;
+
+/**
+ * Bounded history of notifications. Only data of notifications is stored, in
+ * fixed size ring buffer, so memory used stays constant however many
+ * notifications are shown. When full, the oldest records are overwritten.
+ * <p>
+ * History can be used by one {@link FancyNotifications} or shared by all
+ * notifications of session (see {@link #getSessionHistory(int)}). Methods of
+ * history are thread safe, so it can be read e.g. by background fetching of
+ * {@link FancyInfiniteCssLayout}.
+ */
+@SuppressWarnings("serial")
+public class NotificationHistory implements Serializable {
+
+    public final static int DEFAULT_CAPACITY = 100;
+
+    /**
+     * Data of notification shown
+     */
+    public static class Record implements Serializable {
+        private final Object id;
+        private final Resource icon;
+        private final String styleName;
+        private final long timestamp;
+        private long sequence;
+        private volatile String title;
+        private volatile String description;
+        private volatile int occurrences;
+
+        Record(Object id, String title, String description, Resource icon,
+                String styleName, int occurrences, long timestamp) {
+            this.id = id;
+            this.title = title;
+            this.description = description;
+            this.icon = icon;
+            this.styleName = styleName;
+            this.occurrences = occurrences;
+            this.timestamp = timestamp;
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public Resource getIcon() {
+            return icon;
+        }
+
+        public String getStyleName() {
+            return styleName;
+        }
+
+        /**
+         * Get time when notification was first shown
+         * 
+         * @return Time in milliseconds
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Get sequence number of record in history. Records added later have
+         * higher numbers.
+         * 
+         * @return Sequence number
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Get number of times this notification occurred (see
+         * {@link FancyNotifications#setDuplicateWindow(int)})
+         * 
+         * @return Number of occurrences
+         */
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        void update(String title, String description) {
+            this.title = title;
+            this.description = description;
+        }
+
+        void setOccurrences(int occurrences) {
+            this.occurrences = occurrences;
+        }
+    }
+
+    private final Record[] records;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Sequence number given to next record
+     */
+    private long nextSequence = 0L;
+
+    /**
+     * Create history with default capacity
+     */
+    public NotificationHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create history
+     * 
+     * @param capacity
+     *            Maximum number of records kept
+     */
+    public NotificationHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity has to be positive");
+        }
+        records = new Record[capacity];
+    }
+
+    /**
+     * Get history shared by all notifications of current session. History is
+     * created when first asked.
+     * 
+     * @param capacity
+     *            Capacity used if history is created
+     * @return History of current session
+     */
+    public static NotificationHistory getSessionHistory(int capacity) {
+        VaadinSession session = VaadinSession.getCurrent();
+        if (session == null) {
+            throw new IllegalStateException("No current session");
+        }
+        NotificationHistory history = session
+                .getAttribute(NotificationHistory.class);
+        if (history == null) {
+            history = new NotificationHistory(capacity);
+            session.setAttribute(NotificationHistory.class, history);
+        }
+        return history;
+    }
+
+    synchronized void add(Record record) {
+        record.sequence = nextSequence++;
+        records[head] = record;
+        head = (head + 1) % records.length;
+        if (size < records.length) {
+            ++size;
+        }
+    }
+
+    /**
+     * Get maximum number of records kept
+     * 
+     * @return Capacity of history
+     */
+    public int getCapacity() {
+        return records.length;
+    }
+
+    /**
+     * Get number of records in history
+     * 
+     * @return Number of records
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get page of records, newest first. Offset is counted from the newest
+     * record, so pages shift when records are added while paging. Use
+     * {@link #getPageBefore(long, int)} to page stable.
+     * 
+     * @param offset
+     *            Number of newest records skipped
+     * @param limit
+     *            Maximum number of records returned
+     * @return Records of page
+     */
+    public synchronized List<Record> getPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        int count = Math.max(0, Math.min(limit, size - offset));
+        List<Record> page = new ArrayList<Record>(count);
+        for (int i = offset; i < offset + count; ++i) {
+            int index = (head - 1 - i + records.length) % records.length;
+            page.add(records[index]);
+        }
+        return page;
+    }
+
+    /**
+     * Get page of records older than given sequence number, newest first.
+     * Pages are not affected by records added meanwhile: give sequence
+     * number of last record of previous page to get next page.
+     * 
+     * @param before
+     *            Only records with lower sequence number are returned,
+     *            Long.MAX_VALUE to start from the newest record
+     * @param limit
+     *            Maximum number of records returned
+     * @return Records of page
+     */
+    public synchronized List<Record> getPageBefore(long before, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        long skipped = nextSequence - Math.min(before, nextSequence);
+        if (skipped >= size) {
+            return new ArrayList<Record>(0);
+        }
+        return getPage((int) skipped, limit);
+    }
+
+    /**
+     * Count records older than given sequence number
+     * 
+     * @param before
+     *            Only records with lower sequence number are counted
+     * @return Number of records
+     */
+    public synchronized int countBefore(long before) {
+        long skipped = nextSequence - Math.min(before, nextSequence);
+        return (int) Math.max(0L, size - skipped);
+    }
+
+    /**
+     * Remove all records
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < records.length; ++i) {
+            records[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Get data provider of records, newest first. Provider is anchored to the
+     * newest record when query starting from the beginning is made, so
+     * records added meanwhile do not shift later pages. Records added after
+     * that are shown when provider is queried from the beginning again.
+     * 
+     * @return Data provider
+     */
+    public DataProvider<Record, Void> asDataProvider() {
+        final AtomicLong anchor = new AtomicLong(Long.MAX_VALUE);
+        return DataProvider.fromCallbacks(query -> {
+            if (query.getOffset() == 0) {
+                anchor.set(getNextSequence());
+            }
+            return getPageBefore(anchor.get() - query.getOffset(),
+                    query.getLimit()).stream();
+        }, query -> countBefore(anchor.get()));
+    }
+
+    private synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Create view that lazily loads records of history, newest first.
+     * Components of records are only created when those are scrolled to.
+     * 
+     * @return History view
+     */
+    public FancyInfiniteCssLayout<Record> createView() {
+        FancyInfiniteCssLayout<Record> view = new FancyInfiniteCssLayout<Record>(
+                asDataProvider(), record -> {
+                    FancyNotification notification = new FancyNotification(
+                            record.getId(), record.getTitle(), record
+                                    .getDescription(), record.getIcon(),
+                            record.getStyleName());
+                    notification.setOccurrences(record.getOccurrences());
+                    return notification;
+                });
+        view.addStyleName("fancy-notif-history");
+        return view;
+    }
+}
@@ -0,0 +1,586 @@
+/**
+ * NotificationHub.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.Resource;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.Registration;
+import com.vaadin.ui.UI;
+
+/**
+ * JVM wide hub that broadcasts notifications to FancyNotifications layouts
+ * subscribed to topics. Publishing only queues the notification, so its cost
+ * does not depend on number of subscribers. Fan-out is done by shared worker
+ * threads: subscribers are split to stripes, each stripe delivers its
+ * notifications serially, and each layout shows all notifications delivered
+ * meanwhile in one UI.access (see
+ * {@link FancyNotifications#post(Object, String, String)}).
+ * <p>
+ * Subscriptions are removed automatically when layout is detached or garbage
+ * collected. Subscriptions do not survive session serialization, so sessions
+ * migrated to other node have to subscribe again.
+ * <p>
+ * Hubs of multiple nodes can be connected with
+ * {@link #setTransport(NotificationTransport)}.
+ */
+public class NotificationHub {
+
+    public final static int DEFAULT_MAX_PENDING = 10000;
+
+    private static NotificationHub defaultHub;
+
+    /**
+     * Notification published to topic
+     */
+    private static class Message {
+        final NotificationBatch.Entry entry;
+
+        /**
+         * true if published on other node
+         */
+        final boolean remote;
+
+        Message(NotificationBatch.Entry entry, boolean remote) {
+            this.entry = entry;
+            this.remote = remote;
+        }
+    }
+
+    /**
+     * Sequence numbers of batches received from one source. Keeps track of
+     * the highest number and of the numbers below it inside window.
+     */
+    static class SequenceWindow {
+        final static int SIZE = 64;
+
+        private long highest = Long.MIN_VALUE;
+        private long seen = 0L;
+
+        /**
+         * Check if batch should be accepted
+         * 
+         * @return true if batch was not seen before, false if it was seen or
+         *         it is too old to tell
+         */
+        synchronized boolean accept(long sequence) {
+            if (highest == Long.MIN_VALUE || sequence > highest) {
+                long shift = highest == Long.MIN_VALUE ? SIZE : sequence
+                        - highest;
+                seen = shift >= SIZE ? 1L : (seen << shift) | 1L;
+                highest = sequence;
+                return true;
+            }
+
+            long offset = highest - sequence;
+            if (offset >= SIZE || (seen & (1L << offset)) != 0L) {
+                return false;
+            }
+            seen |= 1L << offset;
+            return true;
+        }
+    }
+
+    /**
+     * Message to be delivered to subscribers of one stripe
+     */
+    private static class Delivery {
+        final Set<Subscriber> subscribers;
+        final Message message;
+
+        Delivery(Set<Subscriber> subscribers, Message message) {
+            this.subscribers = subscribers;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Subscribers of topic, split to stripes
+     */
+    private class Topic {
+        final List<Set<Subscriber>> stripes = new ArrayList<Set<Subscriber>>(
+                stripeCount);
+
+        Topic() {
+            for (int i = 0; i < stripeCount; ++i) {
+                stripes.add(ConcurrentHashMap.<Subscriber> newKeySet());
+            }
+        }
+
+        boolean isEmpty() {
+            for (Set<Subscriber> stripe : stripes) {
+                if (!stripe.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Subscribed layout. Stays in the hub, only key of it is given out.
+     */
+    private class Subscriber {
+        final String topic;
+        final int stripe;
+        final long key;
+        final WeakReference<FancyNotifications> target;
+        Registration detachRegistration;
+
+        Subscriber(String topic, long key, FancyNotifications target) {
+            this.topic = topic;
+            this.key = key;
+            this.stripe = (System.identityHashCode(target) & 0x7fffffff)
+                    % stripeCount;
+            this.target = new WeakReference<FancyNotifications>(target);
+        }
+
+        void unsubscribe() {
+            subscribers.remove(key, this);
+            topics.computeIfPresent(topic, (name, topicSubscribers) -> {
+                topicSubscribers.stripes.get(stripe).remove(this);
+                return topicSubscribers.isEmpty() ? null : topicSubscribers;
+            });
+        }
+    }
+
+    /**
+     * Registration given to application. Only refers to hub and subscriber
+     * by their ids, so it can be serialized with session. Subscriptions are
+     * not restored when session is deserialized, and removing subscription
+     * deserialized in other JVM does nothing.
+     */
+    @SuppressWarnings("serial")
+    private static class Subscription implements Registration {
+        final String hub;
+        final String topic;
+        final long key;
+
+        Subscription(String hub, String topic, long key) {
+            this.hub = hub;
+            this.topic = topic;
+            this.key = key;
+        }
+
+        @Override
+        public void remove() {
+            WeakReference<NotificationHub> ref = hubs.get(hub);
+            NotificationHub resolved = ref != null ? ref.get() : null;
+            if (resolved != null) {
+                resolved.unsubscribe(key);
+            }
+        }
+    }
+
+    /**
+     * Removes subscription when layout is detached
+     */
+    @SuppressWarnings("serial")
+    private static class Unsubscriber implements ClientConnector.DetachListener {
+        private final Subscription subscription;
+
+        Unsubscriber(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void detach(ClientConnector.DetachEvent event) {
+            subscription.remove();
+        }
+    }
+
+    /**
+     * Hubs of this JVM by their ids, used to resolve hub of subscription
+     */
+    private static final ConcurrentHashMap<String, WeakReference<NotificationHub>> hubs = new ConcurrentHashMap<String, WeakReference<NotificationHub>>();
+
+    private final Executor executor;
+    private final int stripeCount;
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<String, Topic>();
+    private final ConcurrentHashMap<Long, Subscriber> subscribers = new ConcurrentHashMap<Long, Subscriber>();
+    private final AtomicLong nextSubscriber = new AtomicLong();
+    private final List<BatchQueue<Delivery>> stripeQueues;
+
+    /**
+     * Unique id of this hub in batches sent to other nodes
+     */
+    private final String source = UUID.randomUUID().toString();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final ConcurrentHashMap<String, SequenceWindow> received = new ConcurrentHashMap<String, SequenceWindow>();
+    private volatile NotificationTransport transport = null;
+
+    private final NotificationTransport.Receiver receiver = new NotificationTransport.Receiver() {
+        @Override
+        public void receive(NotificationBatch batch) {
+            receiveBatch(batch);
+        }
+    };
+
+    @SuppressWarnings("serial")
+    private final BatchQueue<Message> inbox = new BatchQueue<Message>(
+            DEFAULT_MAX_PENDING) {
+        @Override
+        protected void process(List<Message> batch) {
+            dispatch(batch);
+            sendBatch(batch);
+        }
+
+        @Override
+        protected boolean submitDrain(Runnable drain) {
+            executor.execute(drain);
+            return true;
+        }
+    };
+
+    /**
+     * Get hub shared by the JVM. Uses worker threads of
+     * {@link FancyScheduler}.
+     * 
+     * @return Default hub
+     */
+    public static synchronized NotificationHub get() {
+        if (defaultHub == null) {
+            defaultHub = new NotificationHub(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    FancyScheduler.execute(command);
+                }
+            }, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return defaultHub;
+    }
+
+    /**
+     * Create new hub
+     * 
+     * @param executor
+     *            Executor running fan-out, should have bounded number of
+     *            threads
+     * @param stripes
+     *            Number of stripes subscribers are split to, at most this
+     *            many fan-out tasks are run at once
+     */
+    @SuppressWarnings("serial")
+    public NotificationHub(Executor executor, int stripes) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor can not be null");
+        }
+        if (stripes <= 0) {
+            throw new IllegalArgumentException(
+                    "Number of stripes has to be positive");
+        }
+        this.executor = executor;
+        this.stripeCount = stripes;
+
+        hubs.values().removeIf(ref -> ref.get() == null);
+        hubs.put(source, new WeakReference<NotificationHub>(this));
+
+        stripeQueues = new ArrayList<BatchQueue<Delivery>>(stripes);
+        for (int i = 0; i < stripes; ++i) {
+            stripeQueues.add(new BatchQueue<Delivery>(Integer.MAX_VALUE) {
+                @Override
+                protected void process(List<Delivery> batch) {
+                    deliver(batch);
+                }
+
+                @Override
+                protected boolean submitDrain(Runnable drain) {
+                    NotificationHub.this.executor.execute(drain);
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Subscribe layout to topic. Has to be called with session lock of
+     * layout. Subscription belongs to this JVM: it is not restored when
+     * session is deserialized (e.g. migrated to other node), so subscribe
+     * again after that.
+     * 
+     * @param topic
+     *            Name of topic
+     * @param target
+     *            Layout where notifications of topic are shown
+     * @return Registration to unsubscribe
+     */
+    public Registration subscribe(String topic, FancyNotifications target) {
+        if (topic == null || target == null) {
+            throw new IllegalArgumentException(
+                    "Topic and target have to be defined");
+        }
+
+        // Deliveries run in scheduler threads, let those stop with service
+        UI ui = target.getUI();
+        VaadinSession session = ui != null ? ui.getSession() : VaadinSession
+                .getCurrent();
+        if (session != null) {
+            FancyScheduler.addService(session.getService());
+        }
+
+        final Subscriber subscriber = new Subscriber(topic,
+                nextSubscriber.getAndIncrement(), target);
+        subscribers.put(subscriber.key, subscriber);
+        topics.compute(topic, (name, topicSubscribers) -> {
+            if (topicSubscribers == null) {
+                topicSubscribers = new Topic();
+            }
+            topicSubscribers.stripes.get(subscriber.stripe).add(subscriber);
+            return topicSubscribers;
+        });
+
+        Subscription subscription = new Subscription(source, topic,
+                subscriber.key);
+        subscriber.detachRegistration = target
+                .addDetachListener(new Unsubscriber(subscription));
+        return subscription;
+    }
+
+    /**
+     * Remove subscriber with given key
+     */
+    private void unsubscribe(long key) {
+        Subscriber subscriber = subscribers.get(key);
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+            if (subscriber.detachRegistration != null) {
+                subscriber.detachRegistration.remove();
+                subscriber.detachRegistration = null;
+            }
+        }
+    }
+
+    /**
+     * Publish notification to all layouts subscribed to topic. Can be called
+     * from any thread.
+     * 
+     * @param topic
+     *            Name of topic
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text
+     * @return true if published, false if too many notifications are waiting
+     *         to be delivered
+     */
+    public boolean publish(String topic, Object id, String title,
+            String description) {
+        return publish(topic, id, title, description, null, null,
+                NotificationPriority.NORMAL);
+    }
+
+    /**
+     * Publish notification with given options to all layouts subscribed to
+     * topic. Can be called from any thread.
+     * 
+     * @param topic
+     *            Name of topic
+     * @param id
+     *            ID of notification, given back in events
+     * @param title
+     *            Title text
+     * @param description
+     *            Description text (null if not needed)
+     * @param icon
+     *            Icon (null if not needed)
+     * @param styleName
+     *            Style name for this notification (null if not needed)
+     * @param priority
+     *            Priority of notification
+     * @return true if published, false if too many notifications are waiting
+     *         to be delivered
+     */
+    public boolean publish(String topic, Object id, String title,
+            String description, Resource icon, String styleName,
+            NotificationPriority priority) {
+        if (topic == null) {
+            throw new IllegalArgumentException("Topic can not be null");
+        }
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        if (title == null && description == null) {
+            throw new IllegalArgumentException(
+                    "You have to define title or description for notification");
+        }
+        return inbox.offer(new Message(new NotificationBatch.Entry(topic, id,
+                title, description, icon, styleName, priority), false));
+    }
+
+    /**
+     * Connect this hub to other nodes. Notifications published on this node
+     * are sent to other nodes in batches, one batch for all notifications
+     * published while previous batch was fanned out. Notifications received
+     * from other nodes are shown to subscribers of this node.
+     * 
+     * @param transport
+     *            Transport used, null to disconnect
+     */
+    public void setTransport(NotificationTransport transport) {
+        NotificationTransport old = this.transport;
+        if (old == transport) {
+            return;
+        }
+        if (old != null) {
+            old.setReceiver(null);
+        }
+        this.transport = transport;
+        if (transport != null) {
+            transport.setReceiver(receiver);
+        }
+    }
+
+    /**
+     * Get transport connecting this hub to other nodes
+     * 
+     * @return Transport or null if not connected
+     */
+    public NotificationTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Send notifications published on this node to other nodes
+     */
+    private void sendBatch(List<Message> messages) {
+        NotificationTransport current = transport;
+        if (current == null) {
+            return;
+        }
+
+        List<NotificationBatch.Entry> entries = new ArrayList<NotificationBatch.Entry>(
+                messages.size());
+        for (Message message : messages) {
+            if (!message.remote) {
+                entries.add(message.entry);
+            }
+        }
+        if (!entries.isEmpty()) {
+            current.send(new NotificationBatch(source, nextSequence
+                    .getAndIncrement(), entries));
+        }
+    }
+
+    /**
+     * Queue notifications received from other node, unless batch has been
+     * received already
+     */
+    private void receiveBatch(NotificationBatch batch) {
+        if (source.equals(batch.getSource())) {
+            return;
+        }
+
+        SequenceWindow window = received.computeIfAbsent(batch.getSource(),
+                key -> new SequenceWindow());
+        if (!window.accept(batch.getSequence())) {
+            return;
+        }
+
+        for (NotificationBatch.Entry entry : batch.getEntries()) {
+            inbox.offer(new Message(entry, true));
+        }
+    }
+
+    /**
+     * Set maximum number of published notifications waiting for fan-out.
+     * Notifications over the limit are rejected.
+     * 
+     * @param max
+     *            Maximum number of waiting notifications
+     */
+    public void setMaxPending(int max) {
+        inbox.setCapacity(max);
+    }
+
+    /**
+     * Get maximum number of published notifications waiting for fan-out
+     * 
+     * @return Maximum number of waiting notifications
+     */
+    public int getMaxPending() {
+        return inbox.getCapacity();
+    }
+
+    /**
+     * Get number of layouts subscribed to topic
+     * 
+     * @param topic
+     *            Name of topic
+     * @return Number of subscribers
+     */
+    public int getSubscriberCount(String topic) {
+        Topic subscribers = topic != null ? topics.get(topic) : null;
+        if (subscribers == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Set<Subscriber> stripe : subscribers.stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    /**
+     * Pass published notifications to stripes having subscribers
+     */
+    private void dispatch(List<Message> messages) {
+        for (Message message : messages) {
+            Topic subscribers = topics.get(message.entry.getTopic());
+            if (subscribers == null) {
+                continue;
+            }
+            for (int i = 0; i < stripeCount; ++i) {
+                Set<Subscriber> stripe = subscribers.stripes.get(i);
+                if (!stripe.isEmpty()) {
+                    stripeQueues.get(i).offer(new Delivery(stripe, message));
+                }
+            }
+        }
+    }
+
+    /**
+     * Post notifications to subscribers of stripe
+     */
+    private void deliver(List<Delivery> deliveries) {
+        for (Delivery delivery : deliveries) {
+            NotificationBatch.Entry entry = delivery.message.entry;
+            for (Subscriber subscriber : delivery.subscribers) {
+                FancyNotifications target = subscriber.target.get();
+                if (target == null) {
+                    subscriber.unsubscribe();
+                } else {
+                    target.post(entry.getId(), entry.getTitle(),
+                            entry.getDescription(), entry.getIcon(),
+                            entry.getStyleName(), entry.getPriority());
+                }
+            }
+        }
+    }
+}
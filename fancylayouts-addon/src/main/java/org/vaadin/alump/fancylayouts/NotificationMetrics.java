@@ -0,0 +1,123 @@
+/**
+ * NotificationMetrics.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latency histograms of notification lifecycle, filled by FancyNotifications
+ * when latency tracking is enabled (see
+ * {@link FancyNotifications#setLatencyMetrics(NotificationMetrics)}). Same
+ * metrics can be shared by multiple layouts, e.g. to collect application wide
+ * latencies. Histograms can be read from any thread.
+ * <p>
+ * Times measured on client side are converted to server clock with offset
+ * estimated from message timestamps, so intervals crossing the network are
+ * approximations.
+ */
+@SuppressWarnings("serial")
+public class NotificationMetrics implements Serializable {
+
+    /**
+     * Measured intervals of notification lifecycle
+     */
+    public enum Interval {
+        /**
+         * From posting notification to sending it to client. Includes time
+         * spent waiting in rate limit queue or backlog.
+         */
+        QUEUED,
+        /**
+         * From sending notification to it being rendered on client side
+         */
+        DELIVERED,
+        /**
+         * From rendering notification to end of its fade in, measured on
+         * client side
+         */
+        FADE_IN,
+        /**
+         * From posting notification to end of its fade in
+         */
+        VISIBLE,
+        /**
+         * From request to close notification (by server or by client side
+         * timeout) to it being removed on client side
+         */
+        CLOSE;
+    }
+
+    private final Map<Interval, LatencyHistogram> histograms = new EnumMap<Interval, LatencyHistogram>(
+            Interval.class);
+
+    public NotificationMetrics() {
+        for (Interval interval : Interval.values()) {
+            histograms.put(interval, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Get histogram of interval
+     * 
+     * @param interval
+     *            Measured interval
+     * @return Histogram of latencies in milliseconds
+     */
+    public LatencyHistogram getHistogram(Interval interval) {
+        if (interval == null) {
+            throw new IllegalArgumentException("Interval can not be null");
+        }
+        return histograms.get(interval);
+    }
+
+    /**
+     * Record latency of interval
+     * 
+     * @param interval
+     *            Measured interval
+     * @param millis
+     *            Latency in milliseconds
+     */
+    void record(Interval interval, long millis) {
+        histograms.get(interval).record(millis);
+    }
+
+    /**
+     * Remove all recorded latencies
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Interval interval : Interval.values()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(interval).append(": ").append(histograms.get(interval));
+        }
+        return sb.toString();
+    }
+}
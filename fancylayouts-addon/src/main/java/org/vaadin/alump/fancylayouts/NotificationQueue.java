@@ -0,0 +1,148 @@
+/**
+ * NotificationQueue.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of notifications waiting to be shown. Notifications are taken in
+ * priority order (FIFO inside each priority), and evicted lowest priority
+ * first.
+ */
+@SuppressWarnings("serial")
+class NotificationQueue extends AbstractCollection<NotificationEntry>
+        implements Serializable {
+
+    private final Deque<NotificationEntry>[] queues;
+    private int size = 0;
+
+    @SuppressWarnings("unchecked")
+    NotificationQueue() {
+        queues = new Deque[NotificationPriority.values().length];
+        for (int i = 0; i < queues.length; ++i) {
+            queues[i] = new ArrayDeque<NotificationEntry>();
+        }
+    }
+
+    @Override
+    public boolean add(NotificationEntry entry) {
+        queues[entry.priority.ordinal()].addLast(entry);
+        ++size;
+        return true;
+    }
+
+    /**
+     * Take oldest notification of highest priority
+     *
+     * @return Notification taken
+     */
+    NotificationEntry removeFirst() {
+        for (int i = queues.length - 1; i >= 0; --i) {
+            if (!queues[i].isEmpty()) {
+                --size;
+                return queues[i].removeFirst();
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Take oldest notification of lowest priority
+     *
+     * @return Notification taken
+     */
+    NotificationEntry removeLowest() {
+        for (int i = 0; i < queues.length; ++i) {
+            if (!queues[i].isEmpty()) {
+                --size;
+                return queues[i].removeFirst();
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Get lowest priority of queued notifications
+     *
+     * @return Lowest priority or null if empty
+     */
+    NotificationPriority getLowestPriority() {
+        for (int i = 0; i < queues.length; ++i) {
+            if (!queues[i].isEmpty()) {
+                return NotificationPriority.values()[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Deque<NotificationEntry> queue : queues) {
+            queue.clear();
+        }
+        size = 0;
+    }
+
+    @Override
+    public Iterator<NotificationEntry> iterator() {
+        return new Iterator<NotificationEntry>() {
+            private int index = queues.length - 1;
+            private Iterator<NotificationEntry> current = queues[index]
+                    .iterator();
+            private Iterator<NotificationEntry> lastReturned = null;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && index > 0) {
+                    current = queues[--index].iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public NotificationEntry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = current;
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                lastReturned.remove();
+                lastReturned = null;
+                --size;
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * NotificationTransport.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+/**
+ * Transport connecting {@link NotificationHub}s of multiple nodes, so
+ * notifications published on one node are shown on all of them.
+ * Implementations pass batches to other nodes with some messaging system.
+ * Batches may be delivered more than once and out of order, hub drops
+ * duplicates by sequence numbers.
+ */
+public interface NotificationTransport {
+
+    /**
+     * Receives batches sent by other nodes
+     */
+    public interface Receiver {
+        /**
+         * Called when batch is received from other node. Can be called from
+         * any thread, should return quickly.
+         * 
+         * @param batch
+         *            Batch received
+         */
+        public void receive(NotificationBatch batch);
+    }
+
+    /**
+     * Send batch to all other nodes. Called from worker thread of hub, one
+     * call at a time.
+     * 
+     * @param batch
+     *            Notifications published on this node
+     */
+    public void send(NotificationBatch batch);
+
+    /**
+     * Set receiver of batches sent by other nodes
+     * 
+     * @param receiver
+     *            Receiver, null to stop receiving
+     */
+    public void setReceiver(Receiver receiver);
+}
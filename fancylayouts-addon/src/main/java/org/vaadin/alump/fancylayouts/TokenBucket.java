@@ -0,0 +1,88 @@
+/**
+ * TokenBucket.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.io.Serializable;
+
+/**
+ * Simple token bucket rate limiter. Tokens are refilled continuously with
+ * given rate, up to given capacity (burst size).
+ */
+@SuppressWarnings("serial")
+class TokenBucket implements Serializable {
+
+    private final double tokensPerMs;
+    private final int capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Create new bucket, initially full
+     *
+     * @param perSecond
+     *            Tokens added per second
+     * @param capacity
+     *            Maximum number of tokens
+     */
+    TokenBucket(double perSecond, int capacity) {
+        this.tokensPerMs = perSecond / 1000.0;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill)
+                    * tokensPerMs);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * Try to take one token
+     *
+     * @param now
+     *            Current time in milliseconds
+     * @return true if token was taken
+     */
+    boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get time until next token is available
+     *
+     * @param now
+     *            Current time in milliseconds
+     * @return Milliseconds until next token
+     */
+    long millisUntilToken(long now) {
+        refill(now);
+        if (tokens >= 1.0) {
+            return 0L;
+        }
+        return (long) Math.ceil((1.0 - tokens) / tokensPerMs);
+    }
+}
@@ -28,14 +28,19 @@ import java.util.Set;
 
 import org.vaadin.alump.fancylayouts.gwt.client.model.BrowserMode;
 import org.vaadin.alump.fancylayouts.gwt.client.model.FancyRemover;
+import org.vaadin.alump.fancylayouts.gwt.client.model.IncreasingSubsequence;
+import org.vaadin.alump.fancylayouts.gwt.client.model.PageVisibility;
 
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.RepeatingCommand;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
 import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.ui.FlowPanel;
 import com.google.gwt.user.client.ui.SimplePanel;
 import com.google.gwt.user.client.ui.Widget;
+import com.google.gwt.user.client.ui.WidgetCollection;
 
 public class GwtFancyCssLayout extends SimplePanel {
 
@@ -45,7 +50,7 @@ public class GwtFancyCssLayout extends SimplePanel {
     protected String width = "";
     protected String height = "";
 
-    protected FlowPanel flowPanel = new FlowPanel();
+    protected ContentPanel flowPanel = new ContentPanel();
     protected List<Widget> children = new ArrayList<Widget>();
     protected Map<Element, Widget> widgetMap = new HashMap<Element, Widget>();
     protected Set<Widget> removingMap = new HashSet<Widget>();
@@ -55,6 +60,19 @@ public class GwtFancyCssLayout extends SimplePanel {
 
     protected FancyRemover fancyRemover = null;
 
+    /**
+     * Copies of removed children being faded out
+     */
+    protected Set<Widget> ghosts = new HashSet<Widget>();
+
+    /**
+     * Unused item wrappers kept for reuse
+     */
+    protected List<SimplePanel> wrapperPool = new ArrayList<SimplePanel>();
+    protected int wrapperPoolSize = 0;
+
+    private HandlerRegistration visibilityRegistration = null;
+
     public GwtFancyCssLayout() {
         addStyleName(CLASS_NAME);
 
@@ -68,13 +86,27 @@ public class GwtFancyCssLayout extends SimplePanel {
     }
 
     public void addOrMove(Widget widget, int index) {
+        addOrMove(widget, index, true);
+    }
+
+    /**
+     * Add widget to given position, or move it there if already child
+     * 
+     * @param widget
+     *            Widget added or moved
+     * @param index
+     *            Index for widget
+     * @param animate
+     *            true if widget should be faded in when added
+     */
+    public void addOrMove(Widget widget, int index, boolean animate) {
         if (hasChild(widget)) {
             if (children.indexOf(widget) != index) {
                 remove(widget);
-                add(widget, index);
+                add(widget, index, animate);
             }
         } else {
-            add(widget, index);
+            add(widget, index, animate);
         }
     }
 
@@ -87,46 +119,190 @@ public class GwtFancyCssLayout extends SimplePanel {
      *            Index for widget
      */
     public void add(Widget widget, int index) {
+        add(widget, index, true);
+    }
+
+    /**
+     * Add widget to given position
+     * 
+     * @param widget
+     *            Widget added
+     * @param index
+     *            Index for widget
+     * @param animate
+     *            true if widget should be faded in
+     */
+    public void add(Widget widget, int index, boolean animate) {
         if (hasChild(widget)) {
             return;
         }
 
-        SimplePanel wrapper = new SimplePanel();
-        wrapper.setStyleName(CLASS_NAME + "-item");
+        SimplePanel wrapper = createWrapper();
 
         if (index < 0 || index >= flowPanel.getWidgetCount()) {
             flowPanel.add(wrapper);
+            children.add(widget);
         } else {
             flowPanel.insert(wrapper, index);
+            children.add(index, widget);
+        }
+
+        attachToWrapper(wrapper, widget, animate);
+    }
+
+    @Override
+    public void add(Widget widget) {
+        add(widget, -1);
+    }
+
+    /**
+     * Set children of layout. Existing children are kept, and only the
+     * minimal set of them is moved (children in longest increasing
+     * subsequence of new positions are left untouched). Moved children are not
+     * detached or faded in again.
+     * 
+     * @param widgets
+     *            New children in order
+     * @param quietAdds
+     *            New children that should not be faded in
+     */
+    public void setChildren(List<Widget> widgets, Set<Widget> quietAdds) {
+        Map<Widget, Integer> newIndexes = new HashMap<Widget, Integer>();
+        for (int i = 0; i < widgets.size(); ++i) {
+            newIndexes.put(widgets.get(i), i);
+        }
+
+        // Drop children that are not anymore in layout
+        List<Widget> remaining = new ArrayList<Widget>(children.size());
+        for (Widget child : children) {
+            if (newIndexes.containsKey(child)) {
+                remaining.add(child);
+            } else {
+                removeWrapper(child);
+            }
+        }
+
+        int[] sequence = new int[remaining.size()];
+        for (int i = 0; i < sequence.length; ++i) {
+            sequence[i] = newIndexes.get(remaining.get(i));
+        }
+        Set<Widget> stable = new HashSet<Widget>();
+        for (int i : IncreasingSubsequence.longest(sequence)) {
+            stable.add(remaining.get(i));
+        }
+
+        // Walk backwards so the element after each child is already in place
+        Element container = flowPanel.getElement();
+        Element next = null;
+        for (int i = widgets.size() - 1; i >= 0; --i) {
+            Widget widget = widgets.get(i);
+            Element wrapperElement;
+            if (hasChild(widget)) {
+                wrapperElement = widget.getParent().getElement();
+                if (!stable.contains(widget)) {
+                    if (next == null) {
+                        container.appendChild(wrapperElement);
+                    } else {
+                        container.insertBefore(wrapperElement, next);
+                    }
+                }
+            } else {
+                SimplePanel wrapper = createWrapper();
+                flowPanel.add(wrapper);
+                wrapperElement = wrapper.getElement();
+                if (next != null) {
+                    container.insertBefore(wrapperElement, next);
+                }
+                attachToWrapper(wrapper, widget, !quietAdds.contains(widget));
+            }
+            next = wrapperElement;
         }
+
+        // Wrappers were moved in DOM directly, so widget collection of panel
+        // has to be updated to match
+        flowPanel.syncWidgetOrder();
+
+        children.clear();
+        children.addAll(widgets);
+    }
+
+    private SimplePanel createWrapper() {
+        if (!wrapperPool.isEmpty()) {
+            return wrapperPool.remove(wrapperPool.size() - 1);
+        }
+        SimplePanel wrapper = new SimplePanel();
+        wrapper.setStyleName(CLASS_NAME + "-item");
+        return wrapper;
+    }
+
+    /**
+     * Set number of unused item wrappers kept for reuse
+     * 
+     * @param size
+     *            Maximum number of pooled wrappers, 0 to disable pooling
+     */
+    public void setWrapperPoolSize(int size) {
+        wrapperPoolSize = size;
+        while (wrapperPool.size() > size) {
+            wrapperPool.remove(wrapperPool.size() - 1);
+        }
+    }
+
+    private void attachToWrapper(SimplePanel wrapper, final Widget widget,
+            boolean animate) {
         wrapper.add(widget);
 
         final Element wrapperElement = wrapper.getElement();
         widgetMap.put(wrapperElement, widget);
 
-        children.add(index, widget);
-
-        if (this.isVisible()) {
+        if (animate && this.isVisible() && !PageVisibility.isHidden()) {
             wrapperElement.getStyle().setOpacity(0.0);
+            if (transitionsEnabled) {
+                addTransitionEndListener(wrapperElement);
+            }
             Scheduler.get().scheduleFixedDelay(new RepeatingCommand() {
 
                 @Override
                 public boolean execute() {
                     wrapperElement.getStyle().setOpacity(1.0);
+                    if (!transitionsEnabled) {
+                        onChildShown(widget);
+                    }
                     return false;
                 }
 
             }, 50);
+            onChildAdded(widget);
+        } else {
+            onChildAdded(widget);
+            onChildShown(widget);
         }
     }
 
-    @Override
-    public void add(Widget widget) {
-        add(widget, -1);
+    /**
+     * Called when new child widget has been added. To be overwritten if
+     * additional actions has to be performed.
+     * 
+     * @param widget
+     *            Child widget added
+     */
+    protected void onChildAdded(Widget widget) {
+    }
+
+    /**
+     * Called when fade in of child widget has ended, or right after it was
+     * added if it was not faded in. To be overwritten if additional actions
+     * has to be performed.
+     * 
+     * @param widget
+     *            Child widget shown
+     */
+    protected void onChildShown(Widget widget) {
     }
 
     public boolean hasChild(Widget widget) {
-        return children.contains(widget);
+        Widget wrapper = widget.getParent();
+        return wrapper != null && widgetMap.get(wrapper.getElement()) == widget;
     }
 
     private void addTransitionEndListener(Element element) {
@@ -149,7 +325,7 @@ public class GwtFancyCssLayout extends SimplePanel {
          element.addEventListener(eventName, function(event){
          that.@org.vaadin.alump.fancylayouts.gwt.client.GwtFancyCssLayout::onTransitionEnd(Ljava/lang/Object;)(element);
          },false);
-         element.hasTransitionEndListener = true;
+         element.setAttribute("hasTransitionEndListener", "1");
     }-*/;
 
     private void onTransitionEnd(Object object) {
@@ -169,6 +345,8 @@ public class GwtFancyCssLayout extends SimplePanel {
             if (value < 0.01f) {
                 removingMap.remove(widget);
                 performFancyRemove(widget);
+            } else if (value > 0.99f && !removingMap.contains(widget)) {
+                onChildShown(widget);
             }
         } catch (Exception e) {
 
@@ -199,6 +377,41 @@ public class GwtFancyCssLayout extends SimplePanel {
         }
     }
 
+    /**
+     * Finish all removals waiting for transition end. Used when page is
+     * hidden, as browser might never fire transition end events then.
+     */
+    protected void finishRemovals() {
+        for (Widget widget : new ArrayList<Widget>(removingMap)) {
+            if (removingMap.remove(widget)) {
+                performFancyRemove(widget);
+            }
+        }
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        visibilityRegistration = PageVisibility
+                .addListener(new PageVisibility.Listener() {
+                    @Override
+                    public void visibilityChanged(boolean hidden) {
+                        if (hidden) {
+                            finishRemovals();
+                        }
+                    }
+                });
+    }
+
+    @Override
+    protected void onUnload() {
+        if (visibilityRegistration != null) {
+            visibilityRegistration.removeHandler();
+            visibilityRegistration = null;
+        }
+        super.onUnload();
+    }
+
     public void setVerticalMarginTransitionEnabled(boolean enabled) {
         verticalMarginTransitionEnabled = enabled;
     }
@@ -215,11 +428,12 @@ public class GwtFancyCssLayout extends SimplePanel {
      * @return true if remove started/done
      */
     public boolean fancyRemove(Widget widget) {
-        if (!children.contains(widget)) {
+        if (!hasChild(widget)) {
             return false;
         }
 
-        if (transitionsEnabled && this.isVisible()) {
+        if (transitionsEnabled && this.isVisible()
+                && !PageVisibility.isHidden()) {
             removeWidgetWithTransition(widget);
         } else {
             performFancyRemove(widget);
@@ -246,22 +460,98 @@ public class GwtFancyCssLayout extends SimplePanel {
      *            Child widget removed
      */
     protected void performFancyRemove(Widget widget) {
-        if (fancyRemover == null) {
+        if (ghosts.remove(widget) || fancyRemover == null) {
             remove(widget);
         } else {
             fancyRemover.remove(widget);
         }
     }
 
+    /**
+     * Panel holding wrappers of children. Wrappers can be moved in DOM
+     * directly, without detaching those, and then synced to widget
+     * collection.
+     */
+    protected static class ContentPanel extends FlowPanel {
+
+        /**
+         * Reorder widget collection to match order of elements in DOM
+         */
+        public void syncWidgetOrder() {
+            WidgetCollection collection = getChildren();
+            Map<Element, Widget> byElement = new HashMap<Element, Widget>();
+            for (Widget widget : collection) {
+                byElement.put(widget.getElement(), widget);
+            }
+
+            while (collection.size() > 0) {
+                collection.remove(collection.size() - 1);
+            }
+            Element element = getElement().getFirstChildElement();
+            while (element != null) {
+                Widget widget = byElement.remove(element);
+                if (widget != null) {
+                    collection.add(widget);
+                }
+                element = element.getNextSiblingElement();
+            }
+            // Should not happen, but do not lose widgets outside of DOM
+            for (Widget widget : byElement.values()) {
+                collection.add(widget);
+            }
+        }
+    }
+
+    /**
+     * Static copy of removed child, shown while it fades out
+     */
+    private static class Ghost extends Widget {
+        Ghost(Element original) {
+            Element copy = original.cloneNode(true).cast();
+            setElement(copy);
+        }
+    }
+
+    /**
+     * Fade out child that has already been removed from server side. Child
+     * is replaced with static copy of it, so the child widget is released
+     * right away. Copy is removed when fade out is done, without calling
+     * fancy remover.
+     * 
+     * @param widget
+     *            Child widget removed
+     * @return true if child was found
+     */
+    public boolean ghostRemove(Widget widget) {
+        if (!hasChild(widget)) {
+            return false;
+        }
+
+        SimplePanel wrapper = (SimplePanel) widget.getParent();
+        String opacity = wrapper.getElement().getStyle().getOpacity();
+        boolean faded = opacity != null && opacity.equals("0");
+        if (faded || !transitionsEnabled || !this.isVisible()
+                || PageVisibility.isHidden()) {
+            remove(widget);
+            return true;
+        }
+
+        Ghost ghost = new Ghost(widget.getElement());
+        removingMap.remove(widget);
+        children.remove(widget);
+        wrapper.setWidget(ghost);
+        widgetMap.put(wrapper.getElement(), ghost);
+        ghosts.add(ghost);
+        removeWidgetWithTransition(ghost);
+        return true;
+    }
+
     @Override
     public boolean remove(Widget widget) {
+        ghosts.remove(widget);
 
-        if (children.contains(widget)) {
-            Widget wrapper = widget.getParent();
-            widgetMap.remove(wrapper.getElement());
-            removingMap.remove(widget);
-
-            flowPanel.remove(wrapper);
+        if (hasChild(widget)) {
+            removeWrapper(widget);
             children.remove(widget);
             return true;
         } else {
@@ -269,6 +559,26 @@ public class GwtFancyCssLayout extends SimplePanel {
         }
     }
 
+    private void removeWrapper(Widget widget) {
+        SimplePanel wrapper = (SimplePanel) widget.getParent();
+        widgetMap.remove(wrapper.getElement());
+        removingMap.remove(widget);
+
+        flowPanel.remove(wrapper);
+
+        if (wrapperPool.size() < wrapperPoolSize) {
+            wrapper.remove(widget);
+            // Clear what fade out transition left behind
+            Style style = wrapper.getElement().getStyle();
+            style.clearOpacity();
+            style.clearMarginTop();
+            style.clearMarginBottom();
+            style.clearMarginLeft();
+            style.clearMarginRight();
+            wrapperPool.add(wrapper);
+        }
+    }
+
     @Override
     public void setWidth(String width) {
         if (this.width.endsWith(width)) {
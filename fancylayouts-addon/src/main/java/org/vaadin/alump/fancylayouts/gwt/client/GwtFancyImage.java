@@ -24,6 +24,7 @@ import java.util.List;
 import org.vaadin.alump.fancylayouts.gwt.client.model.BrowserMode;
 import org.vaadin.alump.fancylayouts.gwt.client.model.ElementStyler;
 import org.vaadin.alump.fancylayouts.gwt.client.model.ElementStyler.Value;
+import org.vaadin.alump.fancylayouts.gwt.client.model.TimerWheel;
 
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
@@ -33,13 +34,13 @@ import com.google.gwt.dom.client.ImageElement;
 import com.google.gwt.dom.client.Style.Display;
 import com.google.gwt.dom.client.Style.Position;
 import com.google.gwt.dom.client.Style.Unit;
-import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Widget;
 
 public class GwtFancyImage extends Widget {
     private final List<ImageElement> images = new ArrayList<ImageElement>();
     private int currentIndex = 0;
-    private Timer autoBrowseTimer;
+    private TimerWheel.Entry autoBrowseTimer;
+    private boolean autoBrowseEnabled = false;
     private int autoBrowseTimeoutMs = 3000;
 
     protected final static String ROTATE_VALUE_VISIBLE = "rotateX(0deg)";
@@ -62,41 +63,59 @@ public class GwtFancyImage extends Widget {
 
     private void stopAutoBrowseTimer() {
         if (autoBrowseTimer != null) {
-            getAutoBrowseTimer().cancel();
+            autoBrowseTimer.cancel();
             autoBrowseTimer = null;
         }
     }
 
-    private Timer getAutoBrowseTimer() {
-        if (autoBrowseTimer == null) {
-            autoBrowseTimer = new Timer() {
-
-                @Override
-                public void run() {
-                    if (GwtFancyImage.this.isVisible()) {
-                        showNextImage();
-                    }
-                }
-
-            };
+    private final ScheduledCommand autoBrowseCommand = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            if (GwtFancyImage.this.isVisible()) {
+                showNextImage();
+            }
         }
+    };
 
-        return autoBrowseTimer;
+    private void startAutoBrowseTimer() {
+        stopAutoBrowseTimer();
+        autoBrowseTimer = TimerWheel.get().scheduleRepeating(
+                autoBrowseCommand, autoBrowseTimeoutMs);
     }
 
     public void setAutoBrowseEnabled(boolean on) {
+        autoBrowseEnabled = on;
         if (on) {
-            getAutoBrowseTimer().scheduleRepeating(autoBrowseTimeoutMs);
-            getAutoBrowseTimer().run();
+            if (isAttached()) {
+                startAutoBrowseTimer();
+            }
+            autoBrowseCommand.execute();
         } else {
             stopAutoBrowseTimer();
         }
     }
 
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        if (autoBrowseEnabled) {
+            startAutoBrowseTimer();
+        }
+    }
+
+    @Override
+    protected void onUnload() {
+        // Timer wheel would keep detached image alive
+        stopAutoBrowseTimer();
+        super.onUnload();
+    }
+
     public void setAutoBrowseTimeout(int millis) {
         if (millis > 0 && autoBrowseTimeoutMs != millis) {
             autoBrowseTimeoutMs = millis;
-            getAutoBrowseTimer().scheduleRepeating(autoBrowseTimeoutMs);
+            if (autoBrowseTimer != null) {
+                startAutoBrowseTimer();
+            }
         }
     }
 
@@ -0,0 +1,158 @@
+/**
+ * GwtFancyInfiniteCssLayout.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+
+/**
+ * FancyCssLayout with sentinel element after the items. When sentinel becomes
+ * visible (resolved with IntersectionObserver) more items are requested.
+ */
+public class GwtFancyInfiniteCssLayout extends GwtFancyCssLayout {
+
+    public final static String INFINITE_CLASS_NAME = CLASS_NAME + "-infinite";
+
+    /**
+     * Interface for listening when more items should be loaded
+     */
+    public interface LoadMoreListener {
+        /**
+         * Called when end of items is visible and more should be loaded
+         */
+        public void loadMore();
+    }
+
+    protected final DivElement sentinel = Document.get().createDivElement();
+    protected boolean hasMore = true;
+    protected boolean loading = false;
+    protected boolean failed = false;
+    protected LoadMoreListener loadMoreListener = null;
+
+    private JavaScriptObject observer = null;
+
+    public GwtFancyInfiniteCssLayout() {
+        super();
+        addStyleName(INFINITE_CLASS_NAME);
+
+        sentinel.setClassName(INFINITE_CLASS_NAME + "-sentinel");
+        getElement().appendChild(sentinel);
+    }
+
+    public void setLoadMoreListener(LoadMoreListener listener) {
+        loadMoreListener = listener;
+    }
+
+    /**
+     * Update loading status
+     *
+     * @param hasMore
+     *            true if there are still items to be loaded
+     * @param loading
+     *            true if page is currently being loaded
+     * @param failed
+     *            true if loading of last page failed, more items are not
+     *            requested until this is cleared
+     */
+    public void setLoadingState(boolean hasMore, boolean loading,
+            boolean failed) {
+        boolean wasWaiting = this.loading || !this.hasMore || this.failed;
+        this.hasMore = hasMore;
+        this.loading = loading;
+        this.failed = failed;
+
+        if (loading) {
+            sentinel.addClassName(INFINITE_CLASS_NAME + "-loading");
+        } else {
+            sentinel.removeClassName(INFINITE_CLASS_NAME + "-loading");
+        }
+
+        if (failed) {
+            sentinel.addClassName(INFINITE_CLASS_NAME + "-failed");
+            stopObserving();
+        } else {
+            sentinel.removeClassName(INFINITE_CLASS_NAME + "-failed");
+        }
+
+        // Observer only reports changes, so check again if sentinel is still
+        // visible after page was loaded
+        if (wasWaiting && hasMore && !loading && !failed && isAttached()) {
+            stopObserving();
+            startObserving();
+        }
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        startObserving();
+    }
+
+    @Override
+    protected void onUnload() {
+        stopObserving();
+        super.onUnload();
+    }
+
+    protected void startObserving() {
+        if (observer == null && !failed) {
+            observer = createObserver(sentinel);
+        }
+    }
+
+    protected void stopObserving() {
+        if (observer != null) {
+            disconnectObserver(observer);
+            observer = null;
+        }
+    }
+
+    private void onSentinelVisible() {
+        if (hasMore && !loading && !failed && loadMoreListener != null) {
+            loading = true;
+            loadMoreListener.loadMore();
+        }
+    }
+
+    private native JavaScriptObject createObserver(Element element)
+    /*-{
+        var that = this;
+        if (!$wnd.IntersectionObserver) {
+            // Without observer, just keep on loading until all is loaded
+            that.@org.vaadin.alump.fancylayouts.gwt.client.GwtFancyInfiniteCssLayout::onSentinelVisible()();
+            return null;
+        }
+        var observer = new $wnd.IntersectionObserver(function(entries) {
+            for (var i = 0; i < entries.length; ++i) {
+                if (entries[i].isIntersecting) {
+                    that.@org.vaadin.alump.fancylayouts.gwt.client.GwtFancyInfiniteCssLayout::onSentinelVisible()();
+                }
+            }
+        }, { rootMargin: '100px' });
+        observer.observe(element);
+        return observer;
+    }-*/;
+
+    private native void disconnectObserver(JavaScriptObject observer)
+    /*-{
+        observer.disconnect();
+    }-*/;
+}
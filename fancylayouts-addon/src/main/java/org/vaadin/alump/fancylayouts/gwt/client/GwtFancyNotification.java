@@ -0,0 +1,113 @@
+/**
+ * GwtFancyNotification.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * Lightweight notification widget. Uses same DOM structure and style names as
+ * FancyNotification component, but is rendered from plain data.
+ */
+public class GwtFancyNotification extends Widget {
+
+    public final static String CLASS_NAME = "fancy-notif";
+
+    protected final Element title = Document.get().createDivElement();
+    protected final Element description = Document.get().createDivElement();
+    protected final ImageElement icon = Document.get().createImageElement();
+    protected Element count = null;
+    protected String styleName = null;
+
+    public GwtFancyNotification() {
+        setElement(Document.get().createDivElement());
+        setStyleName(CLASS_NAME);
+
+        title.setClassName(CLASS_NAME + "-title");
+        description.setClassName(CLASS_NAME + "-desc");
+        icon.setClassName(CLASS_NAME + "-icon");
+        getElement().appendChild(title);
+        getElement().appendChild(description);
+        getElement().appendChild(icon);
+    }
+
+    public void setTitle(String text) {
+        setText(title, text, CLASS_NAME + "-notitle");
+    }
+
+    public void setDescription(String text) {
+        setText(description, text, CLASS_NAME + "-nodesc");
+    }
+
+    private void setText(Element element, String text, String missingStyle) {
+        setStyleName(missingStyle, text == null);
+        element.setInnerText(text != null ? text : "");
+        setVisible(element, text != null);
+    }
+
+    public void setIconUrl(String url) {
+        setStyleName(CLASS_NAME + "-noicon", url == null);
+        setVisible(icon, url != null);
+        if (url != null) {
+            icon.setSrc(url);
+        } else {
+            icon.removeAttribute("src");
+        }
+    }
+
+    /**
+     * Set extra style name of notification
+     * 
+     * @param style
+     *            Style name, null if none
+     */
+    public void setNotificationStyle(String style) {
+        if (styleName != null) {
+            removeStyleName(styleName);
+        }
+        styleName = style;
+        if (styleName != null) {
+            addStyleName(styleName);
+        }
+    }
+
+    /**
+     * Set number of occurrences shown in badge
+     * 
+     * @param occurrences
+     *            Number of occurrences, badge is only shown if more than one
+     */
+    public void setOccurrences(int occurrences) {
+        if (occurrences <= 1) {
+            if (count != null) {
+                setVisible(count, false);
+            }
+            return;
+        }
+        if (count == null) {
+            count = Document.get().createDivElement();
+            count.setClassName(CLASS_NAME + "-count");
+            getElement().appendChild(count);
+        }
+        count.setInnerText("\u00d7" + occurrences);
+        setVisible(count, true);
+    }
+}
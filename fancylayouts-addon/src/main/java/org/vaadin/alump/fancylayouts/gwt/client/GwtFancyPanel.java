@@ -26,6 +26,7 @@ import org.vaadin.alump.fancylayouts.gwt.client.model.BrowserMode;
 import org.vaadin.alump.fancylayouts.gwt.client.model.ElementStyler;
 import org.vaadin.alump.fancylayouts.gwt.client.model.ElementStyler.Value;
 import org.vaadin.alump.fancylayouts.gwt.client.model.FadeOutListener;
+import org.vaadin.alump.fancylayouts.gwt.client.model.PageVisibility;
 
 import com.google.gwt.core.client.Scheduler;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
@@ -345,7 +346,7 @@ public class GwtFancyPanel extends SimplePanel {
         }
 
         if (browserMode.hasTransitionEndEvent() && elementStyler.hasValues()
-                && previousWidget == null) {
+                && previousWidget == null && !PageVisibility.isHidden()) {
             changeContentWithTransition(content);
         } else {
             changeContentWithoutTransition(content);
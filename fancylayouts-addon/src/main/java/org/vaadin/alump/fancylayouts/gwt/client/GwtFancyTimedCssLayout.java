@@ -1,7 +1,11 @@
 package org.vaadin.alump.fancylayouts.gwt.client;
 
-import com.google.gwt.core.client.Scheduler;
-import com.google.gwt.core.client.Scheduler.RepeatingCommand;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.vaadin.alump.fancylayouts.gwt.client.model.TimerWheel;
+
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.user.client.ui.Widget;
 
 /**
@@ -10,6 +14,7 @@ import com.google.gwt.user.client.ui.Widget;
 public class GwtFancyTimedCssLayout extends GwtFancyCssLayout {
 
     protected int removeTimeMs = 0;
+    protected Map<Widget, TimerWheel.Entry> removeTimers = new HashMap<Widget, TimerWheel.Entry>();
 
     public GwtFancyTimedCssLayout() {
         super();
@@ -29,20 +34,53 @@ public class GwtFancyTimedCssLayout extends GwtFancyCssLayout {
     }
 
     @Override
-    public void add(Widget widget, int index) {
-        super.add(widget, index);
+    protected void onChildAdded(Widget widget) {
+        super.onChildAdded(widget);
+        restartRemoveTimer(widget);
+    }
+
+    /**
+     * Start automatic removal timer of child again from the beginning
+     * 
+     * @param widget
+     *            Child widget
+     */
+    public void restartRemoveTimer(final Widget widget) {
+        cancelRemoveTimer(widget);
 
-        if (removeTimeMs > 0) {
-            final Widget removeWidget = widget;
+        if (removeTimeMs > 0 && hasChild(widget)) {
+            removeTimers.put(widget,
+                    TimerWheel.get().schedule(new ScheduledCommand() {
+                        @Override
+                        public void execute() {
+                            removeTimers.remove(widget);
+                            onRemoveTimeout(widget);
+                        }
+                    }, removeTimeMs));
+        }
+    }
 
-            Scheduler.get().scheduleFixedPeriod(new RepeatingCommand() {
-                @Override
-                public boolean execute() {
-                    GwtFancyTimedCssLayout.this.fancyRemove(removeWidget);
-                    return false;
-                }
+    /**
+     * Called when automatic removal timer of child expires. To be overwritten
+     * if additional actions has to be performed.
+     * 
+     * @param widget
+     *            Child widget
+     */
+    protected void onRemoveTimeout(Widget widget) {
+        fancyRemove(widget);
+    }
 
-            }, removeTimeMs);
+    private void cancelRemoveTimer(Widget widget) {
+        TimerWheel.Entry timer = removeTimers.remove(widget);
+        if (timer != null) {
+            timer.cancel();
         }
     }
+
+    @Override
+    public boolean remove(Widget widget) {
+        cancelRemoveTimer(widget);
+        return super.remove(widget);
+    }
 }
@@ -0,0 +1,184 @@
+/**
+ * GwtFancyWindowedCssLayout.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.dom.client.DivElement;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Unit;
+import com.google.gwt.event.dom.client.ScrollEvent;
+import com.google.gwt.event.dom.client.ScrollHandler;
+
+/**
+ * FancyCssLayout that only renders window of items. Space of items outside of
+ * window is reserved with spacer elements, so items are expected to be about
+ * the same height.
+ */
+public class GwtFancyWindowedCssLayout extends GwtFancyCssLayout {
+
+    public final static String WINDOWED_CLASS_NAME = CLASS_NAME + "-windowed";
+
+    /**
+     * Interface for listening viewport changes
+     */
+    public interface ViewportListener {
+        /**
+         * Called when viewport is moved outside of rendered window
+         *
+         * @param first
+         *            Index of first visible item
+         * @param count
+         *            Number of items fitting to viewport
+         */
+        public void viewportChanged(int first, int count);
+    }
+
+    protected final DivElement topSpacer = Document.get().createDivElement();
+    protected final DivElement bottomSpacer = Document.get()
+            .createDivElement();
+
+    protected int itemHeight = 30;
+    protected int overscan = 10;
+    protected int windowStart = 0;
+    protected int windowEnd = 0;
+    protected int totalCount = 0;
+
+    private int reportedFirst = -1;
+    private int reportedCount = -1;
+    private boolean checkScheduled = false;
+
+    protected ViewportListener viewportListener = null;
+
+    private final AnimationCallback viewportChecker = new AnimationCallback() {
+        @Override
+        public void execute(double timestamp) {
+            checkScheduled = false;
+            checkViewport();
+        }
+    };
+
+    public GwtFancyWindowedCssLayout() {
+        super();
+        addStyleName(WINDOWED_CLASS_NAME);
+
+        topSpacer.setClassName(WINDOWED_CLASS_NAME + "-spacer");
+        bottomSpacer.setClassName(WINDOWED_CLASS_NAME + "-spacer");
+        getElement().insertBefore(topSpacer, flowPanel.getElement());
+        getElement().appendChild(bottomSpacer);
+
+        addDomHandler(new ScrollHandler() {
+            @Override
+            public void onScroll(ScrollEvent event) {
+                scheduleViewportCheck();
+            }
+        }, ScrollEvent.getType());
+    }
+
+    public void setViewportListener(ViewportListener listener) {
+        viewportListener = listener;
+    }
+
+    /**
+     * Set expected height of single item
+     *
+     * @param px
+     *            Height in pixels
+     */
+    public void setItemHeight(int px) {
+        itemHeight = px;
+    }
+
+    /**
+     * Set number of extra items rendered before and after viewport
+     *
+     * @param items
+     *            Number of items
+     */
+    public void setOverscan(int items) {
+        overscan = items;
+    }
+
+    /**
+     * Set range of items rendered
+     *
+     * @param start
+     *            Index of first rendered item
+     * @param end
+     *            Index after last rendered item
+     * @param total
+     *            Total number of items
+     */
+    public void setWindow(int start, int end, int total) {
+        windowStart = start;
+        windowEnd = end;
+        totalCount = total;
+
+        topSpacer.getStyle().setHeight(start * itemHeight, Unit.PX);
+        bottomSpacer.getStyle().setHeight(Math.max(0, total - end)
+                * itemHeight, Unit.PX);
+
+        scheduleViewportCheck();
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        scheduleViewportCheck();
+    }
+
+    protected void scheduleViewportCheck() {
+        if (!checkScheduled) {
+            checkScheduled = true;
+            AnimationScheduler.get().requestAnimationFrame(viewportChecker,
+                    getElement());
+        }
+    }
+
+    /**
+     * Check if viewport is about to move outside of rendered window, and
+     * report it to listener if so.
+     */
+    protected void checkViewport() {
+        if (itemHeight <= 0 || viewportListener == null || !isAttached()) {
+            return;
+        }
+
+        Element element = getElement();
+        int first = element.getScrollTop() / itemHeight;
+        int count = element.getClientHeight() / itemHeight + 2;
+
+        if (first == reportedFirst && count == reportedCount) {
+            return;
+        }
+
+        int margin = overscan / 2;
+        boolean startCovered = windowStart == 0
+                || first >= windowStart + margin;
+        boolean endCovered = windowEnd >= totalCount
+                || first + count <= windowEnd - margin;
+
+        if (count != reportedCount || !startCovered || !endCovered) {
+            reportedFirst = first;
+            reportedCount = count;
+            viewportListener.viewportChanged(first, count);
+        }
+    }
+}
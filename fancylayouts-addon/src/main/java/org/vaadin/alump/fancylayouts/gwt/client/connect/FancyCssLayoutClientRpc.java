@@ -18,6 +18,8 @@
 
 package org.vaadin.alump.fancylayouts.gwt.client.connect;
 
+import java.util.List;
+
 import com.vaadin.shared.Connector;
 import com.vaadin.shared.communication.ClientRpc;
 
@@ -28,4 +30,11 @@ public interface FancyCssLayoutClientRpc extends ClientRpc {
 	 * @param child Child removed
 	 */
 	public void fancyRemove (Connector child);
+
+	/**
+	 * Ask to start fancy remove of given children as one batch. Works like
+	 * fancyRemove but for multiple children.
+	 * @param children Children removed
+	 */
+	public void fancyRemoveAll (List<Connector> children);
 }
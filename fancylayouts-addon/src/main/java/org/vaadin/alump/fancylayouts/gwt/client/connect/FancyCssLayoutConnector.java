@@ -18,10 +18,17 @@
 
 package org.vaadin.alump.fancylayouts.gwt.client.connect;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyCssLayout;
 import org.vaadin.alump.fancylayouts.gwt.client.model.FancyRemover;
 import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyCssLayoutState;
 
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ComponentConnector;
@@ -50,6 +57,25 @@ public class FancyCssLayoutConnector extends AbstractLayoutConnector {
             getWidget().fancyRemove(widget);
         }
 
+        @Override
+        public void fancyRemoveAll(List<Connector> children) {
+            for (Connector child : children) {
+                fancyRemove(child);
+            }
+        }
+
+    };
+
+    /**
+     * Removals finished during current event loop
+     */
+    private final List<Connector> pendingRemoves = new ArrayList<Connector>();
+
+    private final ScheduledCommand removeFlusher = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            flushRemoves();
+        }
     };
 
     private final LayoutClickEventHandler clickEventHandler = new LayoutClickEventHandler(
@@ -81,12 +107,41 @@ public class FancyCssLayoutConnector extends AbstractLayoutConnector {
 
             @Override
             public void remove(Widget widget) {
-                cssServerRpc.remove(findConnectorWithElement(widget
-                        .getElement()));
+                queueRemove(findConnectorWithElement(widget.getElement()));
             }
         });
     }
 
+    /**
+     * Queue final removal of child. All removals queued during one event loop
+     * are sent to server with one call.
+     * 
+     * @param child
+     *            Child removed
+     */
+    protected void queueRemove(Connector child) {
+        if (child == null) {
+            return;
+        }
+        if (pendingRemoves.isEmpty()) {
+            Scheduler.get().scheduleDeferred(removeFlusher);
+        }
+        pendingRemoves.add(child);
+    }
+
+    private void flushRemoves() {
+        if (pendingRemoves.isEmpty()) {
+            return;
+        }
+        List<Connector> removed = new ArrayList<Connector>(pendingRemoves);
+        pendingRemoves.clear();
+        if (removed.size() == 1) {
+            cssServerRpc.remove(removed.get(0));
+        } else {
+            cssServerRpc.removeAll(removed);
+        }
+    }
+
     @Override
     public GwtFancyCssLayout getWidget() {
         return (GwtFancyCssLayout) super.getWidget();
@@ -110,6 +165,7 @@ public class FancyCssLayoutConnector extends AbstractLayoutConnector {
                 getState().horMarginTransition);
         getWidget().setVerticalMarginTransitionEnabled(
                 getState().verMarginTransition);
+        getWidget().setWrapperPoolSize(getState().wrapperPoolSize);
     }
 
     @Override
@@ -121,19 +177,64 @@ public class FancyCssLayoutConnector extends AbstractLayoutConnector {
             if (child.getParent() != this) {
                 Widget widget = child.getWidget();
                 if (widget.isAttached()) {
-                    getWidget().remove(widget);
+                    removeDetachedChild(widget);
                 }
             }
         }
 
-        // Add or move children
-        int index = 0;
+        updateChildren();
+    }
+
+    /**
+     * Remove widget of child that has been removed from server side
+     * 
+     * @param widget
+     *            Widget of child
+     */
+    protected void removeDetachedChild(Widget widget) {
+        getWidget().remove(widget);
+    }
+
+    /**
+     * Add, move and remove child widgets to match current children
+     */
+    protected void updateChildren() {
+        List<Widget> widgets = new ArrayList<Widget>();
+        Set<Widget> quietAdds = new HashSet<Widget>();
+        collectChildWidgets(widgets, quietAdds);
+        getWidget().setChildren(widgets, quietAdds);
+    }
+
+    /**
+     * Collect widgets that should be children of layout, in order.
+     * 
+     * @param widgets
+     *            List where child widgets are added
+     * @param quietAdds
+     *            Set where widgets that should not be faded in are added
+     */
+    protected void collectChildWidgets(List<Widget> widgets,
+            Set<Widget> quietAdds) {
         for (ComponentConnector child : getChildComponents()) {
-            getWidget().addOrMove(child.getWidget(), index);
-            ++index;
+            Widget widget = child.getWidget();
+            widgets.add(widget);
+            if (!isAnimatedAdd(child)) {
+                quietAdds.add(widget);
+            }
         }
     }
 
+    /**
+     * Check if given child should be faded in when it is added to layout.
+     * 
+     * @param child
+     *            Child connector added
+     * @return true if fade in should be used
+     */
+    protected boolean isAnimatedAdd(ComponentConnector child) {
+        return true;
+    }
+
     protected ComponentConnector findConnectorWithElement(Element element) {
         return Util.getConnectorForElement(getConnection(),
                 (Widget) getWidget(),
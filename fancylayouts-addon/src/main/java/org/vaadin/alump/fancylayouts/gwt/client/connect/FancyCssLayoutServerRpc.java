@@ -18,6 +18,8 @@
 
 package org.vaadin.alump.fancylayouts.gwt.client.connect;
 
+import java.util.List;
+
 import com.vaadin.shared.Connector;
 import com.vaadin.shared.communication.ServerRpc;
 import com.vaadin.shared.ui.LayoutClickRpc;
@@ -28,4 +30,11 @@ public interface FancyCssLayoutServerRpc extends LayoutClickRpc, ServerRpc {
 	 * @param child Child removed
 	 */
 	public void remove(Connector child);
+
+	/**
+	 * Client side asked to final removal of children. Removals finished
+	 * before deferred command is run are sent as one batch.
+	 * @param children Children removed
+	 */
+	public void removeAll(List<Connector> children);
 }
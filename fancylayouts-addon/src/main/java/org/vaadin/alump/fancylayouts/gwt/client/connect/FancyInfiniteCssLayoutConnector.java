@@ -0,0 +1,65 @@
+/**
+ * FancyInfiniteCssLayoutConnector.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.connect;
+
+import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyInfiniteCssLayout;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyInfiniteCssLayoutState;
+
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.shared.ui.Connect;
+
+@SuppressWarnings("serial")
+@Connect(org.vaadin.alump.fancylayouts.FancyInfiniteCssLayout.class)
+public class FancyInfiniteCssLayoutConnector extends FancyCssLayoutConnector {
+
+    protected final FancyInfiniteCssLayoutServerRpc infiniteServerRpc = RpcProxy
+            .create(FancyInfiniteCssLayoutServerRpc.class, this);
+
+    @Override
+    public void init() {
+        super.init();
+
+        getWidget().setLoadMoreListener(
+                new GwtFancyInfiniteCssLayout.LoadMoreListener() {
+                    @Override
+                    public void loadMore() {
+                        infiniteServerRpc.loadMore();
+                    }
+                });
+    }
+
+    @Override
+    public GwtFancyInfiniteCssLayout getWidget() {
+        return (GwtFancyInfiniteCssLayout) super.getWidget();
+    }
+
+    @Override
+    public FancyInfiniteCssLayoutState getState() {
+        return (FancyInfiniteCssLayoutState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        getWidget().setLoadingState(getState().hasMore, getState().loading,
+                getState().failed);
+    }
+}
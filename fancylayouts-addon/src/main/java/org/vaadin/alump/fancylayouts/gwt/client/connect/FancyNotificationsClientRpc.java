@@ -0,0 +1,48 @@
+/**
+ * FancyNotificationsClientRpc.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.connect;
+
+import java.util.List;
+
+import org.vaadin.alump.fancylayouts.gwt.client.shared.NotificationItem;
+
+import com.vaadin.shared.Connector;
+import com.vaadin.shared.communication.ClientRpc;
+
+public interface FancyNotificationsClientRpc extends ClientRpc {
+	/**
+	 * Restart automatic close timers of given notifications
+	 * @param children Notifications
+	 */
+	public void restartCloseTimers (List<Connector> children);
+
+	/**
+	 * Restart automatic close timers of given lightweight notifications
+	 * @param keys Keys of notification items
+	 */
+	public void restartItemCloseTimers (List<Integer> keys);
+
+	/**
+	 * Add, update and remove lightweight notifications. Only changed
+	 * notifications are sent, except when connector is created.
+	 * @param items Notification items added or changed
+	 * @param removed Keys of notification items removed
+	 */
+	public void updateItems (List<NotificationItem> items, List<Integer> removed);
+}
@@ -18,11 +18,33 @@
 
 package org.vaadin.alump.fancylayouts.gwt.client.connect;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyCssLayout;
+import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyNotification;
 import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyTimedCssLayout;
+import org.vaadin.alump.fancylayouts.gwt.client.model.FancyRemover;
 import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyNotificationsState;
 import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyNotificationsState.Position;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.LatencyEvent;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.NotificationItem;
 
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.communication.RpcProxy;
 import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.shared.Connector;
 import com.vaadin.shared.ui.Connect;
 
 @SuppressWarnings("serial")
@@ -32,9 +54,217 @@ public class FancyNotificationsConnector extends FancyCssLayoutConnector {
     public final static String STYLE_NAME = "fancy-notifs";
     private String positionStyleName = null;
 
+    private final FancyNotificationsClientRpc notificationsRpc = new FancyNotificationsClientRpc() {
+        @Override
+        public void restartCloseTimers(List<Connector> children) {
+            for (Connector child : children) {
+                getWidget().restartRemoveTimer(
+                        ((ComponentConnector) child).getWidget());
+            }
+        }
+
+        @Override
+        public void restartItemCloseTimers(List<Integer> keys) {
+            for (Integer key : keys) {
+                Widget widget = itemWidgets.get(key);
+                if (widget != null) {
+                    getWidget().restartRemoveTimer(widget);
+                }
+            }
+        }
+
+        @Override
+        public void updateItems(List<NotificationItem> items,
+                List<Integer> removed) {
+            FancyNotificationsConnector.this.updateItems(items, removed);
+            updateChildren();
+        }
+    };
+
+    protected final FancyNotificationsServerRpc notificationsServerRpc = RpcProxy
+            .create(FancyNotificationsServerRpc.class, this);
+
+    /**
+     * Widgets of lightweight notifications, including ones fading out
+     */
+    private final Map<Integer, GwtFancyNotification> itemWidgets = new LinkedHashMap<Integer, GwtFancyNotification>();
+    private final Map<Widget, Integer> itemKeys = new HashMap<Widget, Integer>();
+
+    /**
+     * Items removed by server, no need to report when fade out is done
+     */
+    private final Set<Integer> removedItems = new HashSet<Integer>();
+
+    /**
+     * Items closed during current event loop
+     */
+    private final List<Integer> closedItems = new ArrayList<Integer>();
+
+    private final ScheduledCommand closedFlusher = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            if (!closedItems.isEmpty()) {
+                notificationsServerRpc.itemsClosed(new ArrayList<Integer>(
+                        closedItems));
+                closedItems.clear();
+            }
+        }
+    };
+
+    /**
+     * Latency events waiting to be reported
+     */
+    private final List<LatencyEvent> latencyEvents = new ArrayList<LatencyEvent>();
+
+    /**
+     * Server time of last response with notifications, and client time when
+     * it was handled
+     */
+    private double serverTime = 0.0;
+    private double clientReceived = 0.0;
+
+    private final ScheduledCommand latencyFlusher = new ScheduledCommand() {
+        @Override
+        public void execute() {
+            if (!latencyEvents.isEmpty()) {
+                notificationsServerRpc.latencyReport(
+                        new ArrayList<LatencyEvent>(latencyEvents), serverTime,
+                        clientReceived, Duration.currentTimeMillis());
+                latencyEvents.clear();
+            }
+        }
+    };
+
     @Override
     public void init() {
         super.init();
+        registerRpc(FancyNotificationsClientRpc.class, notificationsRpc);
+    }
+
+    @Override
+    protected void attachFancyRemover(GwtFancyCssLayout widget) {
+        widget.setFancyRemover(new FancyRemover() {
+
+            @Override
+            public void remove(Widget widget) {
+                recordLatency(widget, LatencyEvent.REMOVED);
+                Integer key = itemKeys.remove(widget);
+                if (key == null) {
+                    queueRemove(findConnectorWithElement(widget.getElement()));
+                    return;
+                }
+
+                itemWidgets.remove(key);
+                getWidget().remove(widget);
+                if (!removedItems.remove(key)) {
+                    if (closedItems.isEmpty()) {
+                        Scheduler.get().scheduleDeferred(closedFlusher);
+                    }
+                    closedItems.add(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Create, update and fade out lightweight notification widgets
+     * 
+     * @param items
+     *            Items added or changed
+     * @param removed
+     *            Keys of items removed
+     */
+    protected void updateItems(List<NotificationItem> items,
+            List<Integer> removed) {
+        for (NotificationItem item : items) {
+            GwtFancyNotification widget = itemWidgets.get(item.key);
+            if (widget == null) {
+                widget = createItemWidget(item.key);
+            }
+            widget.setTitle(item.title);
+            widget.setDescription(item.description);
+            widget.setNotificationStyle(item.styleName);
+            widget.setIconUrl(item.iconResource == null ? null
+                    : getResourceUrl(item.iconResource));
+            widget.setOccurrences(item.occurrences);
+        }
+
+        for (Integer key : removed) {
+            GwtFancyNotification widget = itemWidgets.get(key);
+            if (widget != null && removedItems.add(key)) {
+                if (!getWidget().fancyRemove(widget)) {
+                    // Never got added, just forget it
+                    itemWidgets.remove(key);
+                    itemKeys.remove(widget);
+                    removedItems.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record latency event of child, if latency tracking is enabled. Events
+     * recorded during one event loop are reported together.
+     * 
+     * @param widget
+     *            Child widget
+     * @param stage
+     *            Stage of event, see LatencyEvent
+     */
+    protected void recordLatency(Widget widget, int stage) {
+        if (!getState().trackLatency) {
+            return;
+        }
+
+        String key = null;
+        Integer itemKey = itemKeys.get(widget);
+        if (itemKey != null) {
+            key = "i" + itemKey;
+        } else {
+            ComponentConnector child = findConnectorWithElement(widget
+                    .getElement());
+            if (child != null) {
+                key = child.getConnectorId();
+            }
+        }
+        if (key == null) {
+            return;
+        }
+
+        if (latencyEvents.isEmpty()) {
+            Scheduler.get().scheduleDeferred(latencyFlusher);
+        }
+        latencyEvents.add(new LatencyEvent(key, stage, Duration
+                .currentTimeMillis()));
+    }
+
+    private GwtFancyNotification createItemWidget(final int key) {
+        GwtFancyNotification widget = new GwtFancyNotification();
+        widget.addDomHandler(new ClickHandler() {
+            @Override
+            public void onClick(ClickEvent event) {
+                notificationsServerRpc.itemClicked(key);
+            }
+        }, ClickEvent.getType());
+        itemWidgets.put(key, widget);
+        itemKeys.put(widget, key);
+        return widget;
+    }
+
+    @Override
+    protected void removeDetachedChild(Widget widget) {
+        if (getState().serverClose) {
+            getWidget().ghostRemove(widget);
+        } else {
+            super.removeDetachedChild(widget);
+        }
+    }
+
+    @Override
+    protected void collectChildWidgets(List<Widget> widgets,
+            Set<Widget> quietAdds) {
+        super.collectChildWidgets(widgets, quietAdds);
+        widgets.addAll(itemWidgets.values());
     }
 
     @Override
@@ -49,6 +279,24 @@ public class FancyNotificationsConnector extends FancyCssLayoutConnector {
             public void setHorizontalMarginTransitionEnabled(boolean enabled) {
                 super.setHorizontalMarginTransitionEnabled(false);
             }
+
+            @Override
+            protected void onChildAdded(Widget child) {
+                super.onChildAdded(child);
+                recordLatency(child, LatencyEvent.RENDERED);
+            }
+
+            @Override
+            protected void onChildShown(Widget child) {
+                super.onChildShown(child);
+                recordLatency(child, LatencyEvent.SHOWN);
+            }
+
+            @Override
+            protected void onRemoveTimeout(Widget child) {
+                recordLatency(child, LatencyEvent.CLOSE_REQUESTED);
+                super.onRemoveTimeout(child);
+            }
         };
         widget.setStylePrimaryName(STYLE_NAME);
         attachFancyRemover(widget);
@@ -62,7 +310,14 @@ public class FancyNotificationsConnector extends FancyCssLayoutConnector {
 
     @Override
     public void onStateChanged(StateChangeEvent stateChangeEvent) {
-        getWidget().setAutomaticRemoveTimeout(getState().closeTimeoutMs);
+        // Server closes expired notifications itself when serverClose is set
+        getWidget().setAutomaticRemoveTimeout(
+                getState().serverClose ? 0 : getState().closeTimeoutMs);
+
+        if (getState().serverTime != serverTime) {
+            serverTime = getState().serverTime;
+            clientReceived = Duration.currentTimeMillis();
+        }
 
         super.onStateChanged(stateChangeEvent);
 
@@ -72,6 +327,8 @@ public class FancyNotificationsConnector extends FancyCssLayoutConnector {
         positionStyleName = STYLE_NAME + "-"
                 + generatePositionStyleSuffix(getState().position);
         getWidget().addStyleName(positionStyleName);
+
+        updateChildren();
     }
 
     private String generatePositionStyleSuffix(Position position) {
@@ -0,0 +1,51 @@
+/**
+ * FancyNotificationsServerRpc.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.connect;
+
+import java.util.List;
+
+import org.vaadin.alump.fancylayouts.gwt.client.shared.LatencyEvent;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface FancyNotificationsServerRpc extends ServerRpc {
+	/**
+	 * Lightweight notification was clicked
+	 * @param key Key of notification item
+	 */
+	public void itemClicked (int key);
+
+	/**
+	 * Lightweight notifications were closed on client side
+	 * @param keys Keys of notification items
+	 */
+	public void itemsClosed (List<Integer> keys);
+
+	/**
+	 * Latency events measured on client side. Not delayed, as clientSent
+	 * has to be close to the time request is actually sent to estimate
+	 * clock offset.
+	 * @param events Events measured
+	 * @param serverTime Server time of last response handled, 0 if not known
+	 * @param clientReceived Client time when that response was handled
+	 * @param clientSent Client time when report was sent
+	 */
+	public void latencyReport (List<LatencyEvent> events, double serverTime,
+			double clientReceived, double clientSent);
+}
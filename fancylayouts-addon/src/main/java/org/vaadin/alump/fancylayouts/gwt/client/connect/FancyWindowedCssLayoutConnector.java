@@ -0,0 +1,74 @@
+/**
+ * FancyWindowedCssLayoutConnector.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.connect;
+
+import org.vaadin.alump.fancylayouts.gwt.client.GwtFancyWindowedCssLayout;
+import org.vaadin.alump.fancylayouts.gwt.client.shared.FancyWindowedCssLayoutState;
+
+import com.vaadin.client.ComponentConnector;
+import com.vaadin.client.communication.RpcProxy;
+import com.vaadin.client.communication.StateChangeEvent;
+import com.vaadin.shared.ui.Connect;
+
+@SuppressWarnings("serial")
+@Connect(org.vaadin.alump.fancylayouts.FancyWindowedCssLayout.class)
+public class FancyWindowedCssLayoutConnector extends FancyCssLayoutConnector {
+
+    protected final FancyWindowedCssLayoutServerRpc windowServerRpc = RpcProxy
+            .create(FancyWindowedCssLayoutServerRpc.class, this);
+
+    @Override
+    public void init() {
+        super.init();
+
+        getWidget().setViewportListener(
+                new GwtFancyWindowedCssLayout.ViewportListener() {
+                    @Override
+                    public void viewportChanged(int first, int count) {
+                        windowServerRpc.setViewport(first, count);
+                    }
+                });
+    }
+
+    @Override
+    public GwtFancyWindowedCssLayout getWidget() {
+        return (GwtFancyWindowedCssLayout) super.getWidget();
+    }
+
+    @Override
+    public FancyWindowedCssLayoutState getState() {
+        return (FancyWindowedCssLayoutState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        getWidget().setItemHeight(getState().itemHeight);
+        getWidget().setOverscan(getState().overscan);
+        getWidget().setWindow(getState().windowStart, getState().windowEnd,
+                getState().totalCount);
+    }
+
+    @Override
+    protected boolean isAnimatedAdd(ComponentConnector child) {
+        // Items scrolled to window are not new, so those are not faded in
+        return !getState().scrolledIn.contains(child);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * FancyWindowedCssLayoutServerRpc.java (FancyLayouts)
+ * 
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.connect;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+public interface FancyWindowedCssLayoutServerRpc extends ServerRpc {
+	/**
+	 * Client side scrolled to show given range of items
+	 * @param first Index of first visible item
+	 * @param count Number of items fitting to viewport
+	 */
+	public void setViewport(int first, int count);
+}
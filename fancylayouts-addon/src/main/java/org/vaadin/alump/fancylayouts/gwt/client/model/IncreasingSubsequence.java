@@ -0,0 +1,68 @@
+/**
+ * IncreasingSubsequence.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.model;
+
+/**
+ * Resolves longest increasing subsequence, used to find children that can
+ * stay in place when children are reordered.
+ */
+public class IncreasingSubsequence {
+
+    private IncreasingSubsequence() {
+    }
+
+    /**
+     * Resolve longest increasing subsequence of given values
+     * 
+     * @param values
+     *            Values (unique)
+     * @return Indexes of values in longest increasing subsequence
+     */
+    public static int[] longest(int[] values) {
+        int[] tails = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+
+        for (int i = 0; i < values.length; ++i) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                ++length;
+            }
+        }
+
+        int[] result = new int[length];
+        int index = length > 0 ? tails[length - 1] : -1;
+        for (int i = length - 1; i >= 0; --i) {
+            result[i] = index;
+            index = previous[index];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * PageVisibility.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.event.shared.HandlerRegistration;
+
+/**
+ * Tracks visibility of page with Page Visibility API. Browsers throttle timers
+ * and skip transitions of hidden pages, so widgets use this to pause their
+ * timers and to skip animations while page is hidden.
+ */
+public class PageVisibility {
+
+    /**
+     * Interface for listening changes of page visibility
+     */
+    public interface Listener {
+        /**
+         * Called when page is hidden or shown again
+         * 
+         * @param hidden
+         *            true if page is now hidden
+         */
+        public void visibilityChanged(boolean hidden);
+    }
+
+    private static final List<Listener> listeners = new ArrayList<Listener>();
+    private static boolean listening = false;
+
+    private PageVisibility() {
+    }
+
+    /**
+     * Check if page is currently hidden (e.g. in background tab)
+     * 
+     * @return true if hidden
+     */
+    public static native boolean isHidden()
+    /*-{
+        return $doc.hidden === true;
+    }-*/;
+
+    /**
+     * Add listener for visibility changes
+     * 
+     * @param listener
+     *            Listener added
+     * @return Registration used to remove listener
+     */
+    public static HandlerRegistration addListener(final Listener listener) {
+        if (!listening) {
+            listening = true;
+            listen();
+        }
+        listeners.add(listener);
+        return new HandlerRegistration() {
+            @Override
+            public void removeHandler() {
+                listeners.remove(listener);
+            }
+        };
+    }
+
+    private static native void listen()
+    /*-{
+        $doc.addEventListener("visibilitychange", $entry(function() {
+            @org.vaadin.alump.fancylayouts.gwt.client.model.PageVisibility::fireChanged()();
+        }), false);
+    }-*/;
+
+    private static void fireChanged() {
+        boolean hidden = isHidden();
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.visibilityChanged(hidden);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * TimerWheel.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Hashed timer wheel shared by all Fancy widgets. All timed tasks of the page
+ * are driven by one browser timer, which is only woken up when next non-empty
+ * slot of the wheel is due. Due tasks are run in animation frame, so those
+ * are aligned with rendering. While page is hidden tasks are not run, tasks
+ * that became due meanwhile are run in one batch when page is shown again.
+ * Tasks can be cancelled in constant time.
+ */
+public class TimerWheel {
+
+    /**
+     * Resolution of wheel in milliseconds (about one frame)
+     */
+    public final static int TICK_MS = 16;
+
+    private final static int WHEEL_SIZE = 512;
+    private final static int MASK = WHEEL_SIZE - 1;
+
+    private static TimerWheel instance;
+
+    /**
+     * Get timer wheel shared by all widgets
+     * 
+     * @return Shared timer wheel
+     */
+    public static TimerWheel get() {
+        if (instance == null) {
+            instance = new TimerWheel();
+            instance.listenVisibility();
+        }
+        return instance;
+    }
+
+    /**
+     * Task scheduled to timer wheel
+     */
+    public class Entry {
+        private final ScheduledCommand command;
+        private final int periodTicks;
+        private int deadline;
+        private Entry prev = null;
+        private Entry next = null;
+        private boolean scheduled = false;
+
+        private Entry(ScheduledCommand command, int periodTicks) {
+            this.command = command;
+            this.periodTicks = periodTicks;
+        }
+
+        /**
+         * Cancel task. Does nothing if task is not scheduled anymore.
+         */
+        public void cancel() {
+            unlink(this);
+        }
+
+        /**
+         * Check if task is still waiting to be run
+         * 
+         * @return true if scheduled
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+
+    private final Entry[] slots = new Entry[WHEEL_SIZE];
+    private final double startMs;
+    private int currentTick = 0;
+    private int count = 0;
+    private int wakeTick = Integer.MAX_VALUE;
+    private boolean frameRequested = false;
+
+    private final Timer driver = new Timer() {
+        @Override
+        public void run() {
+            wakeTick = Integer.MAX_VALUE;
+            // While hidden, due tasks wait and are run in one batch when
+            // page is shown again
+            if (!PageVisibility.isHidden()) {
+                requestAdvance();
+            }
+        }
+    };
+
+    private final AnimationCallback frame = new AnimationCallback() {
+        @Override
+        public void execute(double timestamp) {
+            frameRequested = false;
+            advance();
+        }
+    };
+
+    protected TimerWheel() {
+        startMs = currentTimeMillis();
+    }
+
+    private void listenVisibility() {
+        PageVisibility.addListener(new PageVisibility.Listener() {
+            @Override
+            public void visibilityChanged(boolean hidden) {
+                if (!hidden && count > 0) {
+                    requestAdvance();
+                }
+            }
+        });
+    }
+
+    /**
+     * Get current time, overridden in tests
+     */
+    protected double currentTimeMillis() {
+        return Duration.currentTimeMillis();
+    }
+
+    /**
+     * Wake up wheel after delay, overridden in tests
+     */
+    protected void scheduleWake(int delayMs) {
+        driver.schedule(delayMs);
+    }
+
+    /**
+     * Cancel pending wake up, overridden in tests
+     */
+    protected void cancelWake() {
+        driver.cancel();
+    }
+
+    /**
+     * Run due tasks in next animation frame
+     */
+    protected void requestAdvance() {
+        if (!frameRequested) {
+            frameRequested = true;
+            AnimationScheduler.get().requestAnimationFrame(frame);
+        }
+    }
+
+    /**
+     * Run command once after delay
+     * 
+     * @param command
+     *            Command run
+     * @param delayMs
+     *            Delay in milliseconds
+     * @return Entry that can be used to cancel command
+     */
+    public Entry schedule(ScheduledCommand command, int delayMs) {
+        Entry entry = new Entry(command, 0);
+        link(entry, toTicks(delayMs));
+        return entry;
+    }
+
+    /**
+     * Run command repeatedly until cancelled
+     * 
+     * @param command
+     *            Command run
+     * @param periodMs
+     *            Period in milliseconds
+     * @return Entry that can be used to cancel command
+     */
+    public Entry scheduleRepeating(ScheduledCommand command, int periodMs) {
+        int ticks = toTicks(periodMs);
+        Entry entry = new Entry(command, ticks);
+        link(entry, ticks);
+        return entry;
+    }
+
+    private static int toTicks(int ms) {
+        return Math.max(1, (ms + TICK_MS - 1) / TICK_MS);
+    }
+
+    private int nowTick() {
+        return (int) ((currentTimeMillis() - startMs) / TICK_MS);
+    }
+
+    private void link(Entry entry, int ticks) {
+        entry.deadline = nowTick() + ticks;
+        int slot = entry.deadline & MASK;
+        entry.prev = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+        entry.scheduled = true;
+        ++count;
+
+        if (entry.deadline < wakeTick) {
+            wake(entry.deadline);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (!entry.scheduled) {
+            return;
+        }
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[entry.deadline & MASK] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.scheduled = false;
+        --count;
+    }
+
+    private void wake(int tick) {
+        wakeTick = tick;
+        double delay = startMs + (double) tick * TICK_MS - currentTimeMillis();
+        scheduleWake(Math.max(1, (int) delay));
+    }
+
+    /**
+     * Run all tasks that are due
+     */
+    protected void advance() {
+        int now = nowTick();
+        int steps = Math.min(now - currentTick, WHEEL_SIZE);
+        List<Entry> due = new ArrayList<Entry>();
+        for (int i = 1; i <= steps; ++i) {
+            Entry entry = slots[(currentTick + i) & MASK];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.deadline <= now) {
+                    unlink(entry);
+                    due.add(entry);
+                }
+                entry = next;
+            }
+        }
+        currentTick = now;
+
+        for (Entry entry : due) {
+            if (entry.periodTicks > 0) {
+                // Rescheduled before run, so command can cancel itself
+                link(entry, entry.periodTicks);
+            }
+            try {
+                entry.command.execute();
+            } catch (RuntimeException e) {
+                Logger.getLogger(TimerWheel.class.getName()).log(
+                        Level.SEVERE, "Timed task failed", e);
+            }
+        }
+
+        scheduleNextWake();
+    }
+
+    private void scheduleNextWake() {
+        if (count == 0) {
+            cancelWake();
+            wakeTick = Integer.MAX_VALUE;
+            return;
+        }
+        // Next non-empty slot is never later than the earliest deadline
+        for (int i = 1; i <= WHEEL_SIZE; ++i) {
+            int tick = currentTick + i;
+            if (slots[tick & MASK] != null) {
+                if (tick < wakeTick) {
+                    wake(tick);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -26,4 +26,9 @@ public class FancyCssLayoutState extends AbstractLayoutState {
     public boolean horMarginTransition = true;
     public boolean verMarginTransition = true;
 
+    /**
+     * Number of unused item wrappers client side keeps for reuse
+     */
+    public int wrapperPoolSize = 0;
+
 }
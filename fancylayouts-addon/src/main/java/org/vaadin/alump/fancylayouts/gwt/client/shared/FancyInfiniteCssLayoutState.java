@@ -0,0 +1,39 @@
+/**
+ * FancyInfiniteCssLayoutState.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.shared;
+
+@SuppressWarnings("serial")
+public class FancyInfiniteCssLayoutState extends FancyCssLayoutState {
+
+    /**
+     * Are there still items to be loaded
+     */
+    public boolean hasMore = true;
+
+    /**
+     * Is page currently being loaded
+     */
+    public boolean loading = false;
+
+    /**
+     * Has loading of last page failed. More items are not requested before
+     * server side retries.
+     */
+    public boolean failed = false;
+}
@@ -30,4 +30,21 @@ public class FancyNotificationsState extends FancyCssLayoutState {
     }
 
     public Position position = Position.TOP_RIGHT;
+
+    /**
+     * If server closes expired notifications, client side only fades out
+     * notifications removed by server
+     */
+    public boolean serverClose = false;
+
+    /**
+     * If client side should report latency events
+     */
+    public boolean trackLatency = false;
+
+    /**
+     * Server time when notifications were last sent, used to estimate clock
+     * offset
+     */
+    public double serverTime = 0.0;
 }
@@ -0,0 +1,58 @@
+/**
+ * FancyWindowedCssLayoutState.java (FancyLayouts)
+ * 
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.shared.Connector;
+
+@SuppressWarnings("serial")
+public class FancyWindowedCssLayoutState extends FancyCssLayoutState {
+
+    /**
+     * Expected height of single item in pixels
+     */
+    public int itemHeight = 30;
+
+    /**
+     * Number of extra items rendered before and after viewport
+     */
+    public int overscan = 10;
+
+    /**
+     * Total number of items in layout
+     */
+    public int totalCount = 0;
+
+    /**
+     * Index of first item in rendered window
+     */
+    public int windowStart = 0;
+
+    /**
+     * Index after last item in rendered window
+     */
+    public int windowEnd = 0;
+
+    /**
+     * Children added to window because of scrolling. These are not faded in.
+     */
+    public List<Connector> scrolledIn = new ArrayList<Connector>();
+}
@@ -0,0 +1,71 @@
+/**
+ * LatencyEvent.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.shared;
+
+import java.io.Serializable;
+
+/**
+ * Lifecycle event of notification measured on client side, reported to
+ * server when latency tracking is enabled.
+ */
+@SuppressWarnings("serial")
+public class LatencyEvent implements Serializable {
+
+    /**
+     * Notification was rendered
+     */
+    public final static int RENDERED = 0;
+
+    /**
+     * Fade in of notification ended
+     */
+    public final static int SHOWN = 1;
+
+    /**
+     * Notification was closed by client side timeout
+     */
+    public final static int CLOSE_REQUESTED = 2;
+
+    /**
+     * Fade out of notification ended and it was removed
+     */
+    public final static int REMOVED = 3;
+
+    /**
+     * Connector id of notification component, or "i" followed by key of
+     * lightweight notification item
+     */
+    public String key;
+
+    public int stage;
+
+    /**
+     * Client side time of event in milliseconds since epoch
+     */
+    public double time;
+
+    public LatencyEvent() {
+    }
+
+    public LatencyEvent(String key, int stage, double time) {
+        this.key = key;
+        this.stage = stage;
+        this.time = time;
+    }
+}
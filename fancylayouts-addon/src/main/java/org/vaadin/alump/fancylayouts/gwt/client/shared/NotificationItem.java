@@ -0,0 +1,48 @@
+/**
+ * NotificationItem.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts.gwt.client.shared;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight notification rendered directly by client side widget, without
+ * child components.
+ */
+@SuppressWarnings("serial")
+public class NotificationItem implements Serializable {
+
+    /**
+     * Key of item, unique inside notifications layout
+     */
+    public int key;
+
+    public String title;
+    public String description;
+    public String styleName;
+
+    /**
+     * Key of icon resource, null if no icon
+     */
+    public String iconResource;
+
+    /**
+     * Number of times this notification has occurred
+     */
+    public int occurrences = 1;
+}
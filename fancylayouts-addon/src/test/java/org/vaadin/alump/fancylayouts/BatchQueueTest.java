@@ -0,0 +1,217 @@
+/**
+ * BatchQueueTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class BatchQueueTest extends TestCase {
+
+    /**
+     * Queue whose drain tasks are run manually by test
+     */
+    @SuppressWarnings("serial")
+    private static class ManualQueue extends BatchQueue<Integer> {
+        final List<Runnable> drains = new ArrayList<Runnable>();
+        final List<List<Integer>> batches = new ArrayList<List<Integer>>();
+        boolean accept = true;
+
+        ManualQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        protected void process(List<Integer> batch) {
+            batches.add(batch);
+        }
+
+        @Override
+        protected boolean submitDrain(Runnable drain) {
+            if (accept) {
+                drains.add(drain);
+            }
+            return accept;
+        }
+
+        void runDrains() {
+            while (!drains.isEmpty()) {
+                drains.remove(0).run();
+            }
+        }
+    }
+
+    public void testItemsOfferedMeanwhileAreOneBatch() {
+        ManualQueue queue = new ManualQueue(100);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        // Only one drain pending
+        assertEquals(1, queue.drains.size());
+        assertEquals(3, queue.size());
+
+        queue.runDrains();
+        assertEquals(1, queue.batches.size());
+        assertEquals(Arrays.asList(1, 2, 3), queue.batches.get(0));
+        assertEquals(0, queue.size());
+
+        assertTrue(queue.offer(4));
+        queue.runDrains();
+        assertEquals(2, queue.batches.size());
+        assertEquals(Arrays.asList(4), queue.batches.get(1));
+    }
+
+    public void testCapacity() {
+        ManualQueue queue = new ManualQueue(2);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(2, queue.size());
+
+        queue.runDrains();
+        assertTrue(queue.offer(3));
+    }
+
+    public void testZeroCapacityRejectsAll() {
+        ManualQueue queue = new ManualQueue(0);
+        assertFalse(queue.offer(1));
+        assertTrue(queue.drains.isEmpty());
+    }
+
+    public void testNegativeCapacity() {
+        try {
+            new ManualQueue(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRejectedDrainIsRetried() {
+        ManualQueue queue = new ManualQueue(10);
+        queue.accept = false;
+        assertTrue(queue.offer(1));
+        assertTrue(queue.drains.isEmpty());
+
+        queue.accept = true;
+        queue.scheduleDrain();
+        assertEquals(1, queue.drains.size());
+        queue.runDrains();
+        assertEquals(Arrays.asList(1), queue.batches.get(0));
+    }
+
+    public void testResetDrain() {
+        ManualQueue queue = new ManualQueue(10);
+        queue.offer(1);
+        // Pending drain is lost, e.g. executor was shut down
+        queue.drains.clear();
+        queue.offer(2);
+        assertTrue(queue.drains.isEmpty());
+
+        queue.resetDrain();
+        queue.scheduleDrain();
+        queue.runDrains();
+        assertEquals(Arrays.asList(1, 2), queue.batches.get(0));
+    }
+
+    @SuppressWarnings("serial")
+    public void testConcurrentOffersProcessedSeriallyInOrder()
+            throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 2000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final AtomicInteger processing = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final int[] lastSeen = new int[threads];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads * perThread);
+        Arrays.fill(lastSeen, -1);
+
+        final BatchQueue<Integer> queue = new BatchQueue<Integer>(
+                Integer.MAX_VALUE) {
+            @Override
+            protected void process(List<Integer> batch) {
+                if (processing.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                try {
+                    // Slow processing, so items are offered meanwhile
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (Integer item : batch) {
+                    int thread = item / perThread;
+                    int index = item % perThread;
+                    if (index <= lastSeen[thread]) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    lastSeen[thread] = index;
+                    done.countDown();
+                }
+                processing.decrementAndGet();
+            }
+
+            @Override
+            protected boolean submitDrain(Runnable drain) {
+                executor.execute(drain);
+                return true;
+            }
+        };
+
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; ++t) {
+            final int base = t * perThread;
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; ++i) {
+                            queue.offer(base + i);
+                            if (i % 20 == 0) {
+                                // Keep offering while batches are processed
+                                Thread.sleep(1);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(0, overlaps.get());
+        assertEquals(0, outOfOrder.get());
+        assertEquals(0, queue.size());
+    }
+}
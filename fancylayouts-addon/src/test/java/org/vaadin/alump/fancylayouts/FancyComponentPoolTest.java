@@ -0,0 +1,85 @@
+/**
+ * FancyComponentPoolTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+
+public class FancyComponentPoolTest extends TestCase {
+
+    private final FancyComponentPool<String, Label> pool = new FancyComponentPool<String, Label>(
+            item -> new Label(), (label, item) -> label.setValue(item));
+
+    public void testRemovedChildIsReused() {
+        FancyCssLayout layout = new FancyCssLayout();
+        pool.recycleFrom(layout);
+        Label a = pool.acquire("a");
+        layout.addComponent(a);
+
+        layout.removeComponent(a);
+        assertEquals(1, pool.getPooledCount());
+        assertSame(a, pool.acquire("b"));
+        assertEquals("b", a.getValue());
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    public void testMovedChildIsNotReleased() {
+        FancyCssLayout layout = new FancyCssLayout();
+        pool.recycleFrom(layout);
+        Label a = pool.acquire("a");
+        Label b = pool.acquire("b");
+        layout.addComponents(a, b);
+
+        // Moves inside layout
+        layout.addComponent(a);
+        layout.addComponent(b, 0);
+        layout.setComponents(Arrays.<Component> asList(a, b));
+        assertEquals(0, pool.getPooledCount());
+
+        Label c = pool.acquire("c");
+        assertNotSame(a, c);
+        assertNotSame(b, c);
+        assertEquals("a", a.getValue());
+
+        // Still pooled when removed later
+        layout.removeComponent(a);
+        assertSame(a, pool.acquire("d"));
+    }
+
+    public void testComponentAddedElsewhereIsNotPooled() {
+        FancyCssLayout layout = new FancyCssLayout();
+        pool.recycleFrom(layout);
+        Label a = pool.acquire("a");
+        layout.addComponent(a);
+
+        FancyCssLayout other = new FancyCssLayout();
+        other.addComponent(a);
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(other, a.getParent());
+    }
+
+    public void testForeignComponentIsNotPooled() {
+        assertFalse(pool.release(new Label()));
+        assertEquals(0, pool.getPooledCount());
+    }
+}
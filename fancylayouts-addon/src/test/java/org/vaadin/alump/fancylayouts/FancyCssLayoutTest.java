@@ -0,0 +1,266 @@
+/**
+ * FancyCssLayoutTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.vaadin.alump.fancylayouts.FancyCssLayout.EvictionPolicy;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.CssLayout;
+import com.vaadin.ui.Label;
+
+public class FancyCssLayoutTest extends TestCase {
+
+    private final Label a = new Label("a");
+    private final Label b = new Label("b");
+    private final Label c = new Label("c");
+    private final Label d = new Label("d");
+    private final Label e = new Label("e");
+
+    private static List<Component> children(FancyCssLayout layout) {
+        List<Component> children = new ArrayList<Component>();
+        for (Component child : layout) {
+            children.add(child);
+        }
+        return children;
+    }
+
+    private static List<Component> items(FancyWindowedCssLayout layout) {
+        List<Component> items = new ArrayList<Component>();
+        for (int i = 0; i < layout.getItemCount(); ++i) {
+            items.add(layout.getItem(i));
+        }
+        return items;
+    }
+
+    public void testReplaceWithNewComponent() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.addComponents(a, b, c);
+        layout.replaceComponent(b, d);
+        assertEquals(Arrays.asList(a, d, c), children(layout));
+        assertNull(b.getParent());
+        assertEquals(layout, d.getParent());
+    }
+
+    public void testReplaceWithExistingChildSwaps() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.addComponents(a, b, c, d);
+        layout.replaceComponent(b, d);
+        assertEquals(Arrays.asList(a, d, c, b), children(layout));
+        assertEquals(layout, b.getParent());
+
+        // Index stays consistent after swap
+        layout.removeComponent(d);
+        assertEquals(Arrays.asList(a, c, b), children(layout));
+        layout.removeComponent(b);
+        assertEquals(Arrays.asList(a, c), children(layout));
+    }
+
+    public void testBulkAddValidatesBeforeMoving() {
+        CssLayout other = new CssLayout();
+        other.addComponent(a);
+        FancyCssLayout layout = new FancyCssLayout();
+        other.addComponent(layout);
+
+        try {
+            layout.addComponents(Arrays.<Component> asList(a, other), 0);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        // a was not moved
+        assertEquals(other, a.getParent());
+        assertEquals(0, layout.getComponentCount());
+    }
+
+    public void testBulkAddMovesChildrenWithoutDetaching() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.addComponents(a, b, c);
+        final List<Component> detached = new ArrayList<Component>();
+        layout.addComponentDetachListener(
+                event -> detached.add(event.getDetachedComponent()));
+
+        layout.addComponents(Arrays.<Component> asList(c, a, d), 1);
+        assertEquals(Arrays.asList(b, c, a, d), children(layout));
+        assertTrue(detached.isEmpty());
+        assertEquals(layout, a.getParent());
+        assertEquals(layout, d.getParent());
+    }
+
+    public void testSetComponentsValidatesBeforeChanging() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.addComponents(a, b);
+        try {
+            layout.setComponents(Arrays.<Component> asList(c, null));
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            layout.setComponents(null);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        assertEquals(Arrays.asList(a, b), children(layout));
+        assertNull(c.getParent());
+    }
+
+    public void testEvictOldest() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.setMaxComponents(3, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponents(a, b, c);
+        layout.addComponent(d);
+        assertEquals(Arrays.asList(b, c, d), children(layout));
+        assertNull(a.getParent());
+    }
+
+    public void testEvictNewest() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.setMaxComponents(3, EvictionPolicy.NEWEST_FIRST, false);
+        layout.addComponents(a, b, c);
+        layout.addComponent(d);
+        // Component just added is kept, newest of the earlier ones goes
+        assertEquals(Arrays.asList(a, b, d), children(layout));
+    }
+
+    public void testEvictJustAddedWhenNothingElseLeft() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.setMaxComponents(2, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponents(a, b, c, d, e);
+        assertEquals(Arrays.asList(d, e), children(layout));
+    }
+
+    public void testEvictionOrderFollowsAdditionsNotPosition() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.setMaxComponents(2, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponent(a);
+        layout.addComponent(b, 0);
+        layout.addComponent(c, 0);
+        // a was added first although it is last
+        assertEquals(Arrays.asList(c, b), children(layout));
+    }
+
+    public void testLoweringMaximumEvicts() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.addComponents(a, b, c, d);
+        layout.setMaxComponents(2, EvictionPolicy.OLDEST_FIRST, false);
+        assertEquals(Arrays.asList(c, d), children(layout));
+
+        layout.setMaxComponents(0, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponents(a, b);
+        assertEquals(4, layout.getComponentCount());
+    }
+
+    public void testFadedEvictionsAreNotCountedTwice() {
+        FancyCssLayout layout = new FancyCssLayout();
+        layout.setMaxComponents(2, EvictionPolicy.OLDEST_FIRST, true);
+        layout.addComponents(a, b);
+        layout.addComponent(c);
+        // a is faded out, still child until client is done
+        assertTrue(layout.fancyRemoveComponents.contains(a));
+        assertEquals(a, children(layout).get(0));
+
+        layout.addComponent(d);
+        assertTrue(layout.fancyRemoveComponents.contains(b));
+        assertFalse(layout.fancyRemoveComponents.contains(c));
+        assertFalse(layout.fancyRemoveComponents.contains(d));
+    }
+
+    public void testInvalidMaximum() {
+        FancyCssLayout layout = new FancyCssLayout();
+        try {
+            layout.setMaxComponents(-1, EvictionPolicy.OLDEST_FIRST);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            layout.setMaxComponents(1, null);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    public void testWindowedEvictOldest() {
+        FancyWindowedCssLayout layout = new FancyWindowedCssLayout();
+        layout.setMaxComponents(3, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponents(a, b, c, d);
+        assertEquals(Arrays.asList(b, c, d), items(layout));
+        assertEquals(3, layout.getComponentCount());
+
+        layout.addComponent(e);
+        assertEquals(Arrays.asList(c, d, e), items(layout));
+        assertNull(a.getParent());
+        assertNull(b.getParent());
+    }
+
+    public void testWindowedEvictNewest() {
+        FancyWindowedCssLayout layout = new FancyWindowedCssLayout();
+        layout.addComponents(a, b, c);
+        layout.setMaxComponents(2, EvictionPolicy.NEWEST_FIRST, false);
+        assertEquals(Arrays.asList(a, b), items(layout));
+        assertEquals(2, layout.getMaxComponents());
+        assertEquals(EvictionPolicy.NEWEST_FIRST, layout.getEvictionPolicy());
+
+        layout.addComponent(d);
+        assertEquals(Arrays.asList(a, d), items(layout));
+    }
+
+    public void testWindowedRemovedItemsNotEvicted() {
+        FancyWindowedCssLayout layout = new FancyWindowedCssLayout();
+        layout.setMaxComponents(2, EvictionPolicy.OLDEST_FIRST, false);
+        layout.addComponents(a, b);
+        layout.removeComponent(a);
+        layout.addComponent(c);
+        assertEquals(Arrays.asList(b, c), items(layout));
+    }
+
+    public void testWindowedItemTakenByOtherContainerIsDropped() {
+        FancyWindowedCssLayout layout = new FancyWindowedCssLayout();
+        layout.setOverscan(0);
+        List<Component> labels = new ArrayList<Component>();
+        for (int i = 0; i < FancyWindowedCssLayout.DEFAULT_VIEWPORT_COUNT
+                + 5; ++i) {
+            labels.add(new Label("item " + i));
+        }
+        layout.addComponents(labels, 0);
+        Component last = labels.get(labels.size() - 1);
+        assertNull(last.getParent());
+
+        CssLayout other = new CssLayout();
+        other.addComponent(last);
+        // Item is dropped when window reaches it
+        layout.setOverscan(5);
+        assertEquals(labels.size() - 1, layout.getItemCount());
+        assertEquals(other, last.getParent());
+
+        // Adding it back takes it from other container
+        layout.addComponent(last, 0);
+        assertEquals(labels.size(), layout.getItemCount());
+        assertEquals(layout, last.getParent());
+        assertEquals(0, other.getComponentCount());
+    }
+}
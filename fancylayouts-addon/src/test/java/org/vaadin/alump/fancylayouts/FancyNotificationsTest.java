@@ -0,0 +1,103 @@
+/**
+ * FancyNotificationsTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import junit.framework.TestCase;
+
+import org.vaadin.alump.fancylayouts.FancyNotifications.OverflowPolicy;
+
+import com.vaadin.ui.Component;
+
+public class FancyNotificationsTest extends TestCase {
+
+    private final FancyNotifications notifications = new FancyNotifications();
+    private final NotificationHistory history = new NotificationHistory(10);
+
+    @Override
+    protected void setUp() {
+        notifications.setHistory(history);
+    }
+
+    private NotificationHistory.Record newestRecord() {
+        return history.getPage(0, 1).get(0);
+    }
+
+    public void testUpdateShown() {
+        notifications.showNotification("a", "Running", "job a");
+        assertTrue(notifications.updateNotification("a", "Done", "job a"));
+
+        FancyNotification shown = (FancyNotification) notifications
+                .getNotification("a");
+        assertEquals("Done", shown.getTitleLabel().getValue());
+        assertEquals("Done", newestRecord().getTitle());
+    }
+
+    public void testUpdateInBacklog() {
+        notifications.setMaxVisible(1);
+        notifications.showNotification("a", "First", null);
+        notifications.showNotification("b", "Running", null);
+        assertEquals(1, notifications.getBacklogCount());
+        assertTrue(notifications.containsNotification("b"));
+        assertNull(notifications.getNotification("b"));
+
+        assertTrue(notifications.updateNotification("b", "Done", null));
+        assertEquals("Done", newestRecord().getTitle());
+
+        // Shown with updated texts when there is room
+        notifications.removeComponent(notifications.getNotification("a"));
+        FancyNotification shown = (FancyNotification) notifications
+                .getNotification("b");
+        assertEquals("Done", shown.getTitleLabel().getValue());
+    }
+
+    public void testCloseQueued() {
+        notifications.setRateLimit(1.0, 1, OverflowPolicy.QUEUE_DROP_OLDEST);
+        notifications.showNotification("a", "First", null);
+        notifications.showNotification("b", "Second", null);
+        assertEquals(1, notifications.getQueuedCount());
+        assertTrue(notifications.containsNotification("b"));
+
+        notifications.closeNotification("b");
+        assertEquals(0, notifications.getQueuedCount());
+        assertFalse(notifications.containsNotification("b"));
+        assertFalse(notifications.updateNotification("b", "Done", null));
+    }
+
+    public void testDroppedAreNotIndexed() {
+        notifications.setRateLimit(1.0, 1, OverflowPolicy.QUEUE_DROP_OLDEST);
+        notifications.setMaxQueued(1);
+        notifications.showNotification("a", "First", null);
+        notifications.showNotification("b", "Second", null);
+        notifications.showNotification("c", "Third", null);
+        assertFalse(notifications.containsNotification("b"));
+        assertTrue(notifications.containsNotification("c"));
+    }
+
+    public void testClosingIsNotContained() {
+        notifications.showNotification("a", "First", null);
+        Component shown = notifications.getNotification("a");
+        notifications.closeNotification("a");
+        assertFalse(notifications.containsNotification("a"));
+        assertFalse(notifications.updateNotification("a", "Done", null));
+
+        // Index is cleaned when component is finally removed
+        notifications.removeComponent(shown);
+        assertNull(notifications.getNotification("a"));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * IncreasingSubsequenceTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.vaadin.alump.fancylayouts.gwt.client.model.IncreasingSubsequence;
+
+public class IncreasingSubsequenceTest extends TestCase {
+
+    /**
+     * Length of longest increasing subsequence, resolved the slow way
+     */
+    private static int slowLength(int[] values) {
+        int[] lengths = new int[values.length];
+        int best = 0;
+        for (int i = 0; i < values.length; ++i) {
+            lengths[i] = 1;
+            for (int j = 0; j < i; ++j) {
+                if (values[j] < values[i]) {
+                    lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+                }
+            }
+            best = Math.max(best, lengths[i]);
+        }
+        return best;
+    }
+
+    private static void assertIncreasing(int[] values, int[] indexes) {
+        for (int i = 1; i < indexes.length; ++i) {
+            assertTrue(indexes[i - 1] < indexes[i]);
+            assertTrue(values[indexes[i - 1]] < values[indexes[i]]);
+        }
+    }
+
+    public void testEmpty() {
+        assertEquals(0, IncreasingSubsequence.longest(new int[0]).length);
+    }
+
+    public void testSingle() {
+        int[] result = IncreasingSubsequence.longest(new int[] { 7 });
+        assertEquals(1, result.length);
+        assertEquals(0, result[0]);
+    }
+
+    public void testSorted() {
+        int[] values = { 0, 1, 2, 3, 4 };
+        int[] result = IncreasingSubsequence.longest(values);
+        assertEquals(5, result.length);
+        assertIncreasing(values, result);
+    }
+
+    public void testReversed() {
+        int[] values = { 4, 3, 2, 1, 0 };
+        assertEquals(1, IncreasingSubsequence.longest(values).length);
+    }
+
+    public void testOneMovedToFront() {
+        // Last child moved first: only it has to be moved
+        int[] values = { 1, 2, 3, 4, 0 };
+        int[] result = IncreasingSubsequence.longest(values);
+        assertEquals(4, result.length);
+        assertIncreasing(values, result);
+        assertEquals(0, result[0]);
+        assertEquals(3, result[3]);
+    }
+
+    public void testRandomPermutations() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; ++round) {
+            int[] values = new int[random.nextInt(40)];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = i;
+            }
+            for (int i = values.length - 1; i > 0; --i) {
+                int j = random.nextInt(i + 1);
+                int tmp = values[i];
+                values[i] = values[j];
+                values[j] = tmp;
+            }
+            int[] result = IncreasingSubsequence.longest(values);
+            assertEquals(slowLength(values), result.length);
+            assertIncreasing(values, result);
+        }
+    }
+}
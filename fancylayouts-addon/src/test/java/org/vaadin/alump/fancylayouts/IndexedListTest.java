@@ -0,0 +1,191 @@
+/**
+ * IndexedListTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class IndexedListTest extends TestCase {
+
+    private static IndexedList<String> listOf(String... values) {
+        IndexedList<String> list = new IndexedList<String>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static void assertConsistent(List<String> expected,
+            IndexedList<String> list) {
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, new ArrayList<String>(list));
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i), list.get(i));
+            assertEquals(i, list.indexOf(expected.get(i)));
+            assertTrue(list.contains(expected.get(i)));
+        }
+    }
+
+    public void testAddAndIndexOf() {
+        IndexedList<String> list = listOf("a", "b", "c");
+        list.add(0, "x");
+        list.add(2, "y");
+        assertConsistent(Arrays.asList("x", "a", "y", "b", "c"),
+                list);
+        assertEquals(-1, list.indexOf("z"));
+        assertFalse(list.contains("z"));
+    }
+
+    public void testDuplicateRejected() {
+        IndexedList<String> list = listOf("a", "b");
+        try {
+            list.add("a");
+            fail("Duplicate accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, list.size());
+    }
+
+    public void testIndexOutOfBounds() {
+        IndexedList<String> list = listOf("a");
+        try {
+            list.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            list.get(-1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            list.add(2, "b");
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            new IndexedList<String>().remove(0);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testSetNewElement() {
+        IndexedList<String> list = listOf("a", "b", "c");
+        assertEquals("b", list.set(1, "x"));
+        assertConsistent(Arrays.asList("a", "x", "c"), list);
+        assertFalse(list.contains("b"));
+        assertFalse(list.remove("b"));
+    }
+
+    public void testSetExistingElementSwaps() {
+        IndexedList<String> list = listOf("a", "b", "c", "d");
+        assertEquals("b", list.set(1, "d"));
+        assertConsistent(Arrays.asList("a", "d", "c", "b"), list);
+
+        // Both elements can still be found and removed
+        assertTrue(list.remove("b"));
+        assertTrue(list.remove("d"));
+        assertConsistent(Arrays.asList("a", "c"), list);
+    }
+
+    public void testSwapAndReverse() {
+        IndexedList<String> list = listOf("a", "b", "c", "d", "e");
+        Collections.swap(list, 0, 4);
+        assertConsistent(Arrays.asList("e", "b", "c", "d", "a"),
+                list);
+        Collections.reverse(list);
+        assertConsistent(Arrays.asList("a", "d", "c", "b", "e"),
+                list);
+    }
+
+    public void testIteratorRemove() {
+        IndexedList<String> list = listOf("a", "b", "c", "d");
+        Iterator<String> iter = list.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().compareTo("c") < 0) {
+                iter.remove();
+            }
+        }
+        assertConsistent(Arrays.asList("c", "d"), list);
+    }
+
+    public void testConcurrentModification() {
+        IndexedList<String> list = listOf("a", "b");
+        Iterator<String> iter = list.iterator();
+        iter.next();
+        list.add("c");
+        try {
+            iter.next();
+            fail();
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    public void testClear() {
+        IndexedList<String> list = listOf("a", "b");
+        list.clear();
+        assertEquals(0, list.size());
+        assertFalse(list.contains("a"));
+        list.add("a");
+        assertConsistent(Arrays.asList("a"), list);
+    }
+
+    public void testRandomOperationsMatchArrayList() {
+        Random random = new Random(1234);
+        List<String> expected = new ArrayList<String>();
+        IndexedList<String> list = new IndexedList<String>();
+        int next = 0;
+
+        for (int round = 0; round < 5000; ++round) {
+            int op = random.nextInt(4);
+            if (op < 2 || expected.isEmpty()) {
+                String value = "v" + next++;
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, value);
+                list.add(index, value);
+            } else if (op == 2) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                String value = expected.get(random.nextInt(expected.size()));
+                assertEquals(expected.indexOf(value), list.indexOf(value));
+                expected.remove(value);
+                assertTrue(list.remove(value));
+            }
+            if (round % 500 == 0) {
+                assertConsistent(expected, list);
+            }
+        }
+        assertConsistent(expected, list);
+    }
+}
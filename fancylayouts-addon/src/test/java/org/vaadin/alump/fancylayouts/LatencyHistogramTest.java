@@ -0,0 +1,117 @@
+/**
+ * LatencyHistogramTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMin());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0L, histogram.getValueAtPercentile(50.0));
+    }
+
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; ++i) {
+            histogram.record(i);
+        }
+        assertEquals(100L, histogram.getCount());
+        assertEquals(1L, histogram.getMin());
+        assertEquals(100L, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.0001);
+        assertEquals(50L, histogram.getValueAtPercentile(50.0));
+        assertEquals(99L, histogram.getValueAtPercentile(99.0));
+        assertEquals(100L, histogram.getValueAtPercentile(100.0));
+        assertEquals(1L, histogram.getValueAtPercentile(0.0));
+    }
+
+    public void testPrecisionOfLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; ++i) {
+            histogram.record(i);
+        }
+        long p50 = histogram.getValueAtPercentile(50.0);
+        long p99 = histogram.getValueAtPercentile(99.0);
+        // About two significant digits
+        assertTrue(p50 >= 50000 && p50 <= 50000 * 1.02);
+        assertTrue(p99 >= 99000 && p99 <= 99000 * 1.02);
+        assertEquals(100000L, histogram.getValueAtPercentile(100.0));
+    }
+
+    public void testBucketBoundaries() {
+        // Values around points where bucket width doubles
+        long[] values = { 127, 128, 129, 255, 256, 257, 511, 512 };
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            long reported = histogram.getValueAtPercentile(50.0);
+            // Clamped to max, which is the value itself
+            assertEquals(value, reported);
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(128);
+        histogram.record(1000);
+        long p50 = histogram.getValueAtPercentile(50.0);
+        assertTrue(p50 >= 128 && p50 <= 129);
+    }
+
+    public void testValuesOutOfRangeAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2L, histogram.getCount());
+        assertEquals(0L, histogram.getMin());
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMax());
+        assertEquals(LatencyHistogram.MAX_VALUE,
+                histogram.getValueAtPercentile(100.0));
+    }
+
+    public void testInvalidPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        try {
+            histogram.getValueAtPercentile(100.1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            histogram.getValueAtPercentile(-1.0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.reset();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getValueAtPercentile(99.0));
+        histogram.record(3);
+        assertEquals(3L, histogram.getMin());
+        assertEquals(3L, histogram.getMax());
+    }
+}
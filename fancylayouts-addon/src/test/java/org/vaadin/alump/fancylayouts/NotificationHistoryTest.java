@@ -0,0 +1,163 @@
+/**
+ * NotificationHistoryTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+
+public class NotificationHistoryTest extends TestCase {
+
+    private static void add(NotificationHistory history, int... ids) {
+        for (int id : ids) {
+            history.add(new NotificationHistory.Record(id, "title " + id,
+                    null, null, null, 1, id));
+        }
+    }
+
+    private static List<Object> ids(List<NotificationHistory.Record> records) {
+        List<Object> ids = new ArrayList<Object>();
+        for (NotificationHistory.Record record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+
+    private static List<Object> ids(int... values) {
+        List<Object> ids = new ArrayList<Object>();
+        for (int value : values) {
+            ids.add(value);
+        }
+        return ids;
+    }
+
+    private static List<Object> fetch(
+            DataProvider<NotificationHistory.Record, Void> provider,
+            int offset, int limit) {
+        return ids(provider
+                .fetch(new Query<NotificationHistory.Record, Void>(offset,
+                        limit, Collections.<QuerySortOrder> emptyList(),
+                        null, null)).collect(
+                        Collectors.<NotificationHistory.Record> toList()));
+    }
+
+    public void testNewestFirst() {
+        NotificationHistory history = new NotificationHistory(10);
+        add(history, 1, 2, 3);
+        assertEquals(3, history.size());
+        assertEquals(ids(3, 2, 1), ids(history.getPage(0, 10)));
+        assertEquals(ids(2), ids(history.getPage(1, 1)));
+    }
+
+    public void testOldestOverwritten() {
+        NotificationHistory history = new NotificationHistory(3);
+        add(history, 1, 2, 3, 4, 5);
+        assertEquals(3, history.size());
+        assertEquals(ids(5, 4, 3), ids(history.getPage(0, 10)));
+    }
+
+    public void testPageOutOfRange() {
+        NotificationHistory history = new NotificationHistory(5);
+        add(history, 1, 2);
+        assertTrue(history.getPage(2, 10).isEmpty());
+        assertTrue(history.getPage(100, 10).isEmpty());
+        assertTrue(history.getPage(0, 0).isEmpty());
+        try {
+            history.getPage(-1, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testUnlimitedPageDoesNotOverflow() {
+        NotificationHistory history = new NotificationHistory(5);
+        add(history, 1, 2, 3);
+        assertEquals(ids(3, 2, 1),
+                ids(history.getPage(0, Integer.MAX_VALUE)));
+        assertEquals(ids(2, 1), ids(history.getPage(1, Integer.MAX_VALUE)));
+        assertTrue(history.getPage(Integer.MAX_VALUE, Integer.MAX_VALUE)
+                .isEmpty());
+    }
+
+    public void testSequenceNumbers() {
+        NotificationHistory history = new NotificationHistory(2);
+        add(history, 1, 2, 3);
+        List<NotificationHistory.Record> page = history.getPage(0, 2);
+        assertEquals(2L, page.get(0).getSequence());
+        assertEquals(1L, page.get(1).getSequence());
+    }
+
+    public void testPageBeforeIsStable() {
+        NotificationHistory history = new NotificationHistory(10);
+        add(history, 1, 2, 3, 4);
+
+        List<NotificationHistory.Record> first = history.getPageBefore(
+                Long.MAX_VALUE, 2);
+        assertEquals(ids(4, 3), ids(first));
+
+        // New records do not shift next page
+        add(history, 5, 6);
+        long anchor = first.get(first.size() - 1).getSequence();
+        assertEquals(ids(2, 1), ids(history.getPageBefore(anchor, 2)));
+        assertEquals(2, history.countBefore(anchor));
+        assertEquals(6, history.countBefore(Long.MAX_VALUE));
+    }
+
+    public void testPageBeforeOverwritten() {
+        NotificationHistory history = new NotificationHistory(3);
+        add(history, 1, 2, 3);
+        long anchor = history.getPage(0, 1).get(0).getSequence();
+        add(history, 4, 5, 6);
+        assertTrue(history.getPageBefore(anchor, 10).isEmpty());
+        assertEquals(0, history.countBefore(anchor));
+    }
+
+    public void testDataProviderIsAnchored() {
+        NotificationHistory history = new NotificationHistory(10);
+        add(history, 1, 2, 3, 4, 5);
+        DataProvider<NotificationHistory.Record, Void> provider = history
+                .asDataProvider();
+
+        assertEquals(ids(5, 4), fetch(provider, 0, 2));
+        add(history, 6, 7);
+        assertEquals(ids(3, 2), fetch(provider, 2, 2));
+        assertEquals(ids(1), fetch(provider, 4, 2));
+
+        // Starting again from the beginning shows new ones
+        assertEquals(ids(7, 6, 5), fetch(provider, 0, 3));
+    }
+
+    public void testClear() {
+        NotificationHistory history = new NotificationHistory(3);
+        add(history, 1, 2);
+        history.clear();
+        assertEquals(0, history.size());
+        assertTrue(history.getPage(0, 10).isEmpty());
+        add(history, 3);
+        assertEquals(ids(3), ids(history.getPage(0, 10)));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * NotificationQueueTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import junit.framework.TestCase;
+
+public class NotificationQueueTest extends TestCase {
+
+    private static NotificationEntry entry(String title,
+            NotificationPriority priority) {
+        NotificationEntry entry = new NotificationEntry(title, title, null,
+                null, null);
+        entry.priority = priority;
+        return entry;
+    }
+
+    public void testHighestPriorityFirstFifoInside() {
+        NotificationQueue queue = new NotificationQueue();
+        queue.add(entry("n1", NotificationPriority.NORMAL));
+        queue.add(entry("l1", NotificationPriority.LOW));
+        queue.add(entry("c1", NotificationPriority.CRITICAL));
+        queue.add(entry("n2", NotificationPriority.NORMAL));
+        queue.add(entry("c2", NotificationPriority.CRITICAL));
+        assertEquals(5, queue.size());
+
+        assertEquals("c1", queue.removeFirst().id);
+        assertEquals("c2", queue.removeFirst().id);
+        assertEquals("n1", queue.removeFirst().id);
+        assertEquals("n2", queue.removeFirst().id);
+        assertEquals("l1", queue.removeFirst().id);
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testRemoveLowest() {
+        NotificationQueue queue = new NotificationQueue();
+        queue.add(entry("h1", NotificationPriority.HIGH));
+        queue.add(entry("n1", NotificationPriority.NORMAL));
+        queue.add(entry("n2", NotificationPriority.NORMAL));
+        assertEquals(NotificationPriority.NORMAL, queue.getLowestPriority());
+
+        assertEquals("n1", queue.removeLowest().id);
+        assertEquals("n2", queue.removeLowest().id);
+        assertEquals(NotificationPriority.HIGH, queue.getLowestPriority());
+        assertEquals("h1", queue.removeLowest().id);
+        assertNull(queue.getLowestPriority());
+    }
+
+    public void testEmpty() {
+        NotificationQueue queue = new NotificationQueue();
+        assertEquals(0, queue.size());
+        assertFalse(queue.iterator().hasNext());
+        try {
+            queue.removeFirst();
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            queue.removeLowest();
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testIteratorOrderAndRemove() {
+        NotificationQueue queue = new NotificationQueue();
+        queue.add(entry("l1", NotificationPriority.LOW));
+        queue.add(entry("h1", NotificationPriority.HIGH));
+        queue.add(entry("n1", NotificationPriority.NORMAL));
+
+        Iterator<NotificationEntry> iter = queue.iterator();
+        assertEquals("h1", iter.next().id);
+        assertEquals("n1", iter.next().id);
+        iter.remove();
+        assertEquals("l1", iter.next().id);
+        assertFalse(iter.hasNext());
+
+        assertEquals(2, queue.size());
+        assertEquals("h1", queue.removeFirst().id);
+        assertEquals("l1", queue.removeFirst().id);
+        assertEquals(0, queue.size());
+    }
+
+    public void testClear() {
+        NotificationQueue queue = new NotificationQueue();
+        queue.add(entry("n1", NotificationPriority.NORMAL));
+        queue.add(entry("h1", NotificationPriority.HIGH));
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertNull(queue.getLowestPriority());
+    }
+}
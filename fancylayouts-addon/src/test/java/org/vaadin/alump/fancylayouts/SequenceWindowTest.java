@@ -0,0 +1,89 @@
+/**
+ * SequenceWindowTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import junit.framework.TestCase;
+
+public class SequenceWindowTest extends TestCase {
+
+    public void testDuplicatesRejected() {
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        assertTrue(window.accept(0));
+        assertFalse(window.accept(0));
+        assertTrue(window.accept(1));
+        assertFalse(window.accept(1));
+        assertFalse(window.accept(0));
+    }
+
+    public void testFirstSequenceCanBeAnything() {
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        assertTrue(window.accept(1000));
+        assertFalse(window.accept(1000));
+        assertTrue(window.accept(999));
+    }
+
+    public void testOutOfOrderInsideWindow() {
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        assertTrue(window.accept(10));
+        assertTrue(window.accept(5));
+        assertTrue(window.accept(7));
+        assertFalse(window.accept(5));
+        assertTrue(window.accept(11));
+        assertFalse(window.accept(7));
+        assertTrue(window.accept(6));
+    }
+
+    public void testWindowEdges() {
+        int size = NotificationHub.SequenceWindow.SIZE;
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        assertTrue(window.accept(size));
+        // Oldest still inside window
+        assertTrue(window.accept(1));
+        assertFalse(window.accept(1));
+        // Too old to tell
+        assertFalse(window.accept(0));
+    }
+
+    public void testJumpClearsWindow() {
+        int size = NotificationHub.SequenceWindow.SIZE;
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(window.accept(i));
+        }
+        assertTrue(window.accept(9 + size));
+        // Sequences between are unseen and inside window
+        assertTrue(window.accept(10));
+        assertTrue(window.accept(8 + size));
+        assertFalse(window.accept(9));
+
+        assertTrue(window.accept(1000000));
+        assertTrue(window.accept(999999));
+        assertFalse(window.accept(9 + size));
+    }
+
+    public void testShiftByWholeWindow() {
+        NotificationHub.SequenceWindow window = new NotificationHub.SequenceWindow();
+        assertTrue(window.accept(0));
+        assertTrue(window.accept(NotificationHub.SequenceWindow.SIZE - 1));
+        assertFalse(window.accept(0));
+        assertTrue(window.accept(NotificationHub.SequenceWindow.SIZE));
+        assertFalse(window.accept(0));
+        assertFalse(window.accept(NotificationHub.SequenceWindow.SIZE - 1));
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * TimerWheelTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.vaadin.alump.fancylayouts.gwt.client.model.TimerWheel;
+
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
+
+public class TimerWheelTest extends TestCase {
+
+    /**
+     * Timer wheel with manual clock, advanced by test
+     */
+    private static class ManualWheel extends TimerWheel {
+        double now = 0.0;
+        int wakeDelay = -1;
+
+        @Override
+        protected double currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        protected void scheduleWake(int delayMs) {
+            wakeDelay = delayMs;
+        }
+
+        @Override
+        protected void cancelWake() {
+            wakeDelay = -1;
+        }
+
+        @Override
+        protected void requestAdvance() {
+            advance();
+        }
+
+        void advanceTo(double millis) {
+            now = millis;
+            advance();
+        }
+    }
+
+    private final List<String> runs = new ArrayList<String>();
+
+    private ScheduledCommand command(final String name) {
+        return new ScheduledCommand() {
+            @Override
+            public void execute() {
+                runs.add(name);
+            }
+        };
+    }
+
+    public void testRunsWhenDue() {
+        ManualWheel wheel = new ManualWheel();
+        TimerWheel.Entry entry = wheel.schedule(command("a"), 100);
+        assertTrue(entry.isScheduled());
+        assertTrue(wheel.wakeDelay > 0);
+
+        wheel.advanceTo(50);
+        assertTrue(runs.isEmpty());
+
+        wheel.advanceTo(100 + TimerWheel.TICK_MS);
+        assertEquals(1, runs.size());
+        assertFalse(entry.isScheduled());
+        assertEquals(-1, wheel.wakeDelay);
+    }
+
+    public void testCancel() {
+        ManualWheel wheel = new ManualWheel();
+        TimerWheel.Entry entry = wheel.schedule(command("a"), 100);
+        wheel.schedule(command("b"), 100);
+        entry.cancel();
+        assertFalse(entry.isScheduled());
+        // Cancelling twice does nothing
+        entry.cancel();
+
+        wheel.advanceTo(1000);
+        assertEquals(1, runs.size());
+        assertEquals("b", runs.get(0));
+    }
+
+    public void testRunsOnlyDueTasks() {
+        ManualWheel wheel = new ManualWheel();
+        wheel.schedule(command("late"), 200);
+        wheel.schedule(command("early"), 50);
+
+        wheel.advanceTo(100);
+        assertEquals(1, runs.size());
+        assertEquals("early", runs.get(0));
+        wheel.advanceTo(300);
+        assertEquals(2, runs.size());
+    }
+
+    public void testRepeating() {
+        ManualWheel wheel = new ManualWheel();
+        TimerWheel.Entry entry = wheel.scheduleRepeating(command("r"), 100);
+        for (int i = 1; i <= 5; ++i) {
+            wheel.advanceTo(i * 112);
+        }
+        assertEquals(5, runs.size());
+        assertTrue(entry.isScheduled());
+
+        entry.cancel();
+        wheel.advanceTo(2000);
+        assertEquals(5, runs.size());
+    }
+
+    public void testCommandCancellingItself() {
+        final ManualWheel wheel = new ManualWheel();
+        final TimerWheel.Entry[] entry = new TimerWheel.Entry[1];
+        entry[0] = wheel.scheduleRepeating(new ScheduledCommand() {
+            @Override
+            public void execute() {
+                runs.add("once");
+                entry[0].cancel();
+            }
+        }, 50);
+
+        wheel.advanceTo(100);
+        wheel.advanceTo(200);
+        assertEquals(1, runs.size());
+        assertFalse(entry[0].isScheduled());
+    }
+
+    public void testDelayLongerThanWheel() {
+        // Wheel has 512 slots, so this goes around it more than twice
+        ManualWheel wheel = new ManualWheel();
+        wheel.schedule(command("far"), 20000);
+
+        wheel.advanceTo(8192 + TimerWheel.TICK_MS);
+        assertTrue(runs.isEmpty());
+        wheel.advanceTo(16384 + TimerWheel.TICK_MS);
+        assertTrue(runs.isEmpty());
+        wheel.advanceTo(20000 + TimerWheel.TICK_MS);
+        assertEquals(1, runs.size());
+    }
+
+    public void testDueTasksRunInOneBatchAfterLongPause() {
+        // E.g. page was hidden for a minute
+        ManualWheel wheel = new ManualWheel();
+        wheel.schedule(command("a"), 100);
+        wheel.schedule(command("b"), 5000);
+        wheel.schedule(command("c"), 30000);
+
+        wheel.advanceTo(60000);
+        assertEquals(3, runs.size());
+        assertEquals(-1, wheel.wakeDelay);
+    }
+
+    public void testZeroDelayWaitsOneTick() {
+        ManualWheel wheel = new ManualWheel();
+        wheel.schedule(command("a"), 0);
+        wheel.advanceTo(0);
+        assertTrue(runs.isEmpty());
+        wheel.advanceTo(TimerWheel.TICK_MS);
+        assertEquals(1, runs.size());
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * TokenBucketTest.java (FancyLayouts)
+ *
+ * Copyright 2012 Vaadin Ltd, Sami Viitanen <alump@vaadin.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.vaadin.alump.fancylayouts;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+    public void testBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(10.0, 3);
+        long now = System.currentTimeMillis();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        // 10 per second, so next token in 100 ms
+        assertEquals(100L, bucket.millisUntilToken(now));
+        assertFalse(bucket.tryAcquire(now + 99));
+        assertTrue(bucket.tryAcquire(now + 100));
+        assertFalse(bucket.tryAcquire(now + 100));
+    }
+
+    public void testMillisUntilTokenWhenAvailable() {
+        TokenBucket bucket = new TokenBucket(1.0, 1);
+        assertEquals(0L, bucket.millisUntilToken(System.currentTimeMillis()));
+    }
+
+    public void testRefillCappedToCapacity() {
+        TokenBucket bucket = new TokenBucket(1000.0, 2);
+        long now = System.currentTimeMillis();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+
+        // Long idle time must not give more than capacity
+        long later = now + 24L * 60L * 60L * 1000L;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    public void testHugeIdleTimeDoesNotOverflow() {
+        TokenBucket bucket = new TokenBucket(1000.0, 1);
+        long now = System.currentTimeMillis();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(Long.MAX_VALUE));
+        assertFalse(bucket.tryAcquire(Long.MAX_VALUE));
+    }
+
+    public void testClockGoingBackwards() {
+        TokenBucket bucket = new TokenBucket(10.0, 1);
+        long now = System.currentTimeMillis();
+        assertTrue(bucket.tryAcquire(now));
+        // Earlier time must not refill nor break later refills
+        assertFalse(bucket.tryAcquire(now - 10000));
+        assertTrue(bucket.tryAcquire(now + 100));
+    }
+}
@@ -1,5 +1,7 @@
 package org.vaadin.alump.fancylayouts.demo;
 
+import java.time.Duration;
+
 import com.vaadin.shared.ui.ContentMode;
 import org.vaadin.alump.fancylayouts.FancyNotification;
 import org.vaadin.alump.fancylayouts.FancyNotifications;
@@ -209,35 +211,13 @@ public class NotificationsDemo extends VerticalLayout {
 
             @Override
             public void buttonClick(ClickEvent event) {
-                Thread myThread = new Thread(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        final int sleepNow = 1 + (int) Math.round(Math.random()
-                                * MAX_SLEEP_TIME);
-                        final int sleepId = ++sleepCounter;
-                        try {
-                            Thread.sleep(sleepNow * 1000);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        getUI().access(new Runnable() {
-
-                            @Override
-                            public void run() {
-                                notifications.showNotification(null, "Sleep #"
-                                        + sleepId, "That was nice " + sleepNow
-                                        + " seconds of sleep!");
-
-                            }
-
-                        });
-
-                    }
-
-                });
-                myThread.start();
-
+                int sleepNow = 1 + (int) Math.round(Math.random()
+                        * MAX_SLEEP_TIME);
+                int sleepId = ++sleepCounter;
+                notifications.showNotificationAfter(
+                        Duration.ofSeconds(sleepNow), null, "Sleep #"
+                                + sleepId, "That was nice " + sleepNow
+                                + " seconds of sleep!");
             }
 
         });